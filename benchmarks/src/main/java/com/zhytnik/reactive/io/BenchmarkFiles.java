@@ -0,0 +1,129 @@
+/*
+ * Copyright 2018 Alexey Zhytnik
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zhytnik.reactive.io;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+
+/**
+ * Generates benchmark files and controls their presence in the OS page cache.
+ *
+ * @author Alexey Zhytnik
+ */
+public final class BenchmarkFiles {
+
+    private static final Path DROP_CACHES = Paths.get("/proc/sys/vm/drop_caches");
+
+    private BenchmarkFiles() {
+    }
+
+    /**
+     * Distribution of line lengths in a generated file.
+     */
+    public enum Lines {
+        /**
+         * Lines of 0-80 characters (logs, metrics, CSV).
+         */
+        SHORT(0, 80, 0, 0),
+        /**
+         * Mostly short lines with rare lines of 1-8KB.
+         */
+        MIXED(0, 200, 1024, 8192),
+        /**
+         * Lines of 32-128KB which don't fit general memory of LineReader.
+         */
+        LONG(32 * 1024, 128 * 1024, 0, 0);
+
+        private final int min;
+        private final int max;
+        private final int rareMin;
+        private final int rareMax;
+
+        Lines(int min, int max, int rareMin, int rareMax) {
+            this.min = min;
+            this.max = max;
+            this.rareMin = rareMin;
+            this.rareMax = rareMax;
+        }
+
+        private int next(Random random) {
+            if (rareMax > 0 && random.nextInt(100) == 0) {
+                return rareMin + random.nextInt(rareMax - rareMin);
+            }
+            return min + random.nextInt(max - min);
+        }
+    }
+
+    /**
+     * Line terminator of a generated file.
+     */
+    public enum Ending {
+        LF("\n"), CRLF("\r\n");
+
+        private final byte[] bytes;
+
+        Ending(String terminator) {
+            this.bytes = terminator.getBytes(StandardCharsets.US_ASCII);
+        }
+    }
+
+    /**
+     * State of the OS page cache before each benchmark invocation.
+     */
+    public enum Cache {
+        WARM, COLD
+    }
+
+    static Path generate(long size, Lines lines, Ending ending) throws IOException {
+        final Path file = Files.createTempFile("reactive-io-", ".txt");
+        final Random random = new Random(size ^ lines.ordinal() ^ ending.ordinal());
+        final byte[] line = new byte[Math.max(lines.max, lines.rareMax) + 1];
+
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file), 1 << 16)) {
+            long written = 0;
+
+            while (written < size) {
+                final int length = (int) Math.min(lines.next(random), size - written);
+
+                for (int i = 0; i < length; i++) {
+                    line[i] = (byte) (' ' + 1 + random.nextInt(94));
+                }
+                out.write(line, 0, length);
+                out.write(ending.bytes);
+                written += length + ending.bytes.length;
+            }
+        }
+        return file;
+    }
+
+    /**
+     * Evicts clean pages from the OS page cache.
+     * Works only on Linux under a user which is allowed to write {@code /proc/sys/vm/drop_caches}.
+     */
+    static void dropCaches() throws IOException, InterruptedException {
+        if (!Files.isWritable(DROP_CACHES)) {
+            throw new IllegalStateException("COLD cache needs write access to " + DROP_CACHES + "!");
+        }
+        new ProcessBuilder("sync").inheritIO().start().waitFor();
+        Files.write(DROP_CACHES, "1".getBytes(StandardCharsets.US_ASCII));
+    }
+}
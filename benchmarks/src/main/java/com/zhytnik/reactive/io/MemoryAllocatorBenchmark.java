@@ -0,0 +1,75 @@
+/*
+ * Copyright 2018 Alexey Zhytnik
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zhytnik.reactive.io;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link LineReader.MemoryAllocator#get()} the way LineParser uses it:
+ * every page is fully read and the mark is moved to the start of the unfinished line.
+ * Lines longer than 28KB force swaps into temporal memory.
+ *
+ * @author Alexey Zhytnik
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class MemoryAllocatorBenchmark {
+
+    @Param({"80", "16384", "65536"})
+    int lineLength;
+
+    int untilTerminator;
+    LineReader.MemoryAllocator allocator;
+
+    @Setup
+    public void setUp() {
+        allocator = new LineReader.MemoryAllocator();
+        untilTerminator = lineLength;
+    }
+
+    @Benchmark
+    public ByteBuffer get() {
+        final ByteBuffer page = allocator.get();
+        final int read = page.remaining();
+
+        if (read < untilTerminator) {
+            untilTerminator -= read;
+            page.position(page.limit());
+        } else {
+            final int unfinished = (read - untilTerminator) % lineLength;
+            untilTerminator = lineLength - unfinished;
+            page.position(page.limit() - unfinished).mark().position(page.limit());
+        }
+        return page;
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ * Copyright 2018 Alexey Zhytnik
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zhytnik.reactive.io;
+
+import com.zhytnik.reactive.io.BenchmarkFiles.Cache;
+import com.zhytnik.reactive.io.BenchmarkFiles.Ending;
+import com.zhytnik.reactive.io.BenchmarkFiles.Lines;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.Flow.Subscriber;
+import java.util.concurrent.Flow.Subscription;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Compares line counting by {@link LineReader} with {@link Files#lines(Path)}
+ * and {@link BufferedReader#readLine()}, and measures raw {@link FileReader} throughput.
+ * Run with {@code -p cache=WARM} when {@code /proc/sys/vm/drop_caches} isn't writable.
+ *
+ * @author Alexey Zhytnik
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ReadBenchmark {
+
+    @Param({"8", "256"})
+    int megabytes;
+
+    @Param({"SHORT", "MIXED", "LONG"})
+    Lines lines;
+
+    @Param({"LF", "CRLF"})
+    Ending ending;
+
+    @Param({"WARM", "COLD"})
+    Cache cache;
+
+    Path file;
+
+    @Setup(Level.Trial)
+    public void generate() throws IOException {
+        file = BenchmarkFiles.generate(megabytes * 1024L * 1024L, lines, ending);
+    }
+
+    @Setup(Level.Invocation)
+    public void prepareCache() throws Exception {
+        if (cache == Cache.COLD) BenchmarkFiles.dropCaches();
+    }
+
+    @TearDown(Level.Trial)
+    public void delete() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public long lineReader() {
+        final LineCounter counter = new LineCounter();
+        new LineReader(file).subscribe(counter);
+        return counter.count;
+    }
+
+    @Benchmark
+    public long adaptiveLineReader() {
+        final LineCounter counter = new LineCounter();
+        LineReader.builder(file).adaptive().build().subscribe(counter);
+        return counter.count;
+    }
+
+    @Benchmark
+    public long lineReaderCount() {
+        return new LineReader(file).count();
+    }
+
+    @Benchmark
+    public long lineBatchReader() {
+        final BatchCounter counter = new BatchCounter();
+        new LineBatchReader(file).subscribe(counter);
+        return counter.count;
+    }
+
+    @Benchmark
+    public long fileReader() {
+        final ByteCounter counter = new ByteCounter(file);
+        new FileReader().subscribe(counter);
+        return counter.count;
+    }
+
+    @Benchmark
+    public long filesLines() throws IOException {
+        try (Stream<String> stream = Files.lines(file)) {
+            return stream.count();
+        }
+    }
+
+    @Benchmark
+    public long bufferedReader() throws IOException {
+        long count = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file, UTF_8)) {
+            while (reader.readLine() != null) count++;
+        }
+        return count;
+    }
+
+    static final class LineCounter implements Subscriber<ByteBuffer> {
+
+        long count;
+
+        @Override
+        public void onSubscribe(Subscription s) {
+            s.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(ByteBuffer line) {
+            count++;
+        }
+
+        @Override
+        public void onError(Throwable e) {
+            throw new IllegalStateException(e);
+        }
+
+        @Override
+        public void onComplete() {
+        }
+    }
+
+    static final class BatchCounter implements Subscriber<LineBatchReader.Batch> {
+
+        long count;
+
+        @Override
+        public void onSubscribe(Subscription s) {
+            s.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(LineBatchReader.Batch batch) {
+            count += batch.size();
+        }
+
+        @Override
+        public void onError(Throwable e) {
+            throw new IllegalStateException(e);
+        }
+
+        @Override
+        public void onComplete() {
+        }
+    }
+
+    static final class ByteCounter implements Subscriber<ByteBuffer> {
+
+        long count;
+
+        private final Path path;
+
+        ByteCounter(Path path) {
+            this.path = path;
+        }
+
+        @Override
+        public void onSubscribe(Subscription s) {
+            ((FileReader.ReadSubscription) s).setPath(path);
+            ((FileReader.ReadSubscription) s).setAllocator(new LineReader.MemoryAllocator());
+            s.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(ByteBuffer chunk) {
+            count += chunk.remaining();
+            chunk.position(chunk.limit()).mark();
+        }
+
+        @Override
+        public void onError(Throwable e) {
+            throw new IllegalStateException(e);
+        }
+
+        @Override
+        public void onComplete() {
+        }
+    }
+}
@@ -0,0 +1,288 @@
+/*
+ * Copyright 2018 Alexey Zhytnik
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zhytnik.reactive.io;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Flow.Publisher;
+import java.util.concurrent.Flow.Subscriber;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * A non-blocking file reader which reads requested bytes of a file by {@link ByteBuffer}
+ * via {@link AsynchronousFileChannel}. Follows the {@link FileReader} contract, but
+ * {@link #subscribe(Subscriber)} returns right after {@link Subscriber#onSubscribe},
+ * reads are issued only when there's requested demand and signals are sent
+ * from the thread which has completed the read or has requested bytes.
+ * Only one read is in flight at any moment, all signals are serialized.
+ * Memory mapping isn't supported.
+ *
+ * @author Alexey Zhytnik
+ */
+public final class AsyncFileReader implements Publisher<ByteBuffer> {
+
+    private final ExecutorService executor;
+
+    /**
+     * Constructs an AsyncFileReader which completes reads in the default thread pool.
+     */
+    public AsyncFileReader() {
+        this(null);
+    }
+
+    /**
+     * Constructs an AsyncFileReader which completes reads in the executor.
+     *
+     * @param executor the executor of completion handlers
+     */
+    public AsyncFileReader(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Subscribes to reading of the file, doesn't use any resources before requests.
+     * Requested bytes are counted from the start of the range,
+     * a value of {@code Long.MAX_VALUE} is request to read the whole range.
+     * Completes only when the end of the range is reached.
+     *
+     * @param subscriber the subscriber-reader
+     * @see FileReader.ReadSubscription
+     */
+    @Override
+    public void subscribe(Subscriber<? super ByteBuffer> subscriber) {
+        final AsyncReadRequest r = new AsyncReadRequest(subscriber, executor);
+        try {
+            subscriber.onSubscribe(r);
+        } catch (Exception error) {
+            r.onError(error);
+        }
+    }
+
+    private static final class AsyncReadRequest implements FileReader.ReadSubscription,
+            CompletionHandler<Integer, ByteBuffer> {
+
+        private long from;
+        private long to;
+        private long max;
+        private long position;
+        private int window;
+
+        private Path path;
+        private Supplier<ByteBuffer> allocator;
+        private AsynchronousFileChannel resource;
+
+        private boolean done;
+        private ByteBuffer ready;
+        private volatile boolean reading;
+        private volatile boolean cancelled;
+
+        private final AtomicInteger wip = new AtomicInteger();
+        private final AtomicLong requested = new AtomicLong();
+        private final AtomicReference<Throwable> error = new AtomicReference<>();
+
+        private final ExecutorService executor;
+        private final Subscriber<? super ByteBuffer> subscriber;
+
+        private AsyncReadRequest(Subscriber<? super ByteBuffer> subscriber, ExecutorService executor) {
+            this.to = Long.MAX_VALUE;
+            this.executor = executor;
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void setPath(Path path) {
+            this.path = path;
+        }
+
+        @Override
+        public void setAllocator(Supplier<ByteBuffer> allocator) {
+            this.allocator = allocator;
+        }
+
+        @Override
+        public void setMapping(int window) {
+            this.window = window;
+        }
+
+        @Override
+        public void setRange(long from, long to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        /**
+         * Reads are issued by requests, so the subscription always waits for them.
+         */
+        @Override
+        public void setAwaiting(boolean awaiting) {
+        }
+
+        @Override
+        public void request(long bytes) {
+            if (path == null || allocator == null) {
+                onError(new IllegalStateException("Both Path and Memory allocator should be installed!"));
+            } else if (window != 0) {
+                onError(new IllegalStateException("Memory mapping isn't supported!"));
+            } else if (from < 0 || to < from) {
+                onError(new IllegalArgumentException("Range [" + from + ", " + to + ") is wrong!"));
+            } else if (bytes < 0) {
+                onError(new IllegalArgumentException("Requested " + bytes + " bytes!"));
+            } else {
+                Demand.add(requested, bytes);
+                drain();
+            }
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            drain();
+        }
+
+        private void onError(Throwable e) {
+            error.compareAndSet(null, e);
+            drain();
+        }
+
+        @Override
+        public void completed(Integer progress, ByteBuffer chunk) {
+            if (progress < 0) {
+                failed(new EOFException("File was truncated during reading!"), chunk);
+                return;
+            }
+            chunk.limit(chunk.position());
+            chunk.position(chunk.limit() - progress);
+
+            ready = chunk;
+            reading = false;
+            drain();
+        }
+
+        @Override
+        public void failed(Throwable e, ByteBuffer chunk) {
+            error.compareAndSet(null, e);
+            reading = false;
+            drain();
+        }
+
+        /**
+         * Sends all signals and issues reads. Only one thread at a time
+         * executes the loop, others only mark that there's new work for it.
+         */
+        private void drain() {
+            if (wip.getAndIncrement() != 0) return;
+
+            int missed = 1;
+            do {
+                if (!done) step();
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void step() {
+            if (cancelled) {
+                terminate();
+                return;
+            }
+            if (error.get() != null) {
+                terminate();
+                subscriber.onError(error.get());
+                return;
+            }
+            if (reading) return;
+
+            try {
+                if (resource == null) open();
+
+                final ByteBuffer chunk = ready;
+                if (chunk != null) {
+                    ready = null;
+                    position += chunk.remaining();
+                    subscriber.onNext(chunk);
+                }
+                if (error.get() == null && !cancelled) {
+                    if (position == max) {
+                        terminate();
+                        subscriber.onComplete();
+                    } else if (position < limit()) {
+                        read();
+                    }
+                }
+            } catch (Exception e) {
+                error.compareAndSet(null, e);
+            }
+            if (!done && (error.get() != null || cancelled)) step();
+        }
+
+        /**
+         * Opens the file and checks the first requests like {@link FileReader}, so requests
+         * which exceed the range fail even if there's nothing to read, for example in an empty file.
+         */
+        private void open() throws IOException {
+            resource = AsynchronousFileChannel.open(path, Collections.singleton(StandardOpenOption.READ), executor);
+            max = Math.min(resource.size(), to);
+
+            if (from > max) {
+                throw new IllegalArgumentException(path + " contains only " + max + " bytes!");
+            }
+            position = from;
+            limit();
+        }
+
+        private long limit() {
+            final long bytes = requested.get();
+
+            if (bytes == Long.MAX_VALUE) return max;
+
+            if (from + bytes > max) {
+                throw new IllegalArgumentException(path + " contains only " + (max - from) + " bytes!");
+            }
+            return from + bytes;
+        }
+
+        private void read() {
+            final ByteBuffer chunk = allocator.get();
+            final long remaining = limit() - position;
+
+            if (chunk.remaining() > remaining) {
+                chunk.limit(chunk.position() + (int) remaining);
+            }
+            reading = true;
+            resource.read(chunk, position, chunk, this);
+        }
+
+        private void terminate() {
+            done = true;
+
+            if (resource != null) {
+                try {
+                    resource.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2018 Alexey Zhytnik
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zhytnik.reactive.io;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+/**
+ * A pool of heap and direct {@link ByteBuffer}s which could be shared by
+ * readers in different threads (see {@link LineReader.Builder#pool(BufferPool)}).
+ * Buffers are grouped by capacity classes of powers of two, each class retains
+ * a bounded count of released buffers, buffers which are idle longer than
+ * the timeout are evicted during next acquiring or releasing of the class.
+ * Buffers greater than 16MB aren't retained. All methods are lock-free.
+ *
+ * @author Alexey Zhytnik
+ */
+public final class BufferPool {
+
+    private static final int MAX_CLASS = 24;
+
+    private final int retention;
+    private final long idleTimeout;
+    private final LongSupplier clock;
+
+    private final Bucket[] heap = buckets();
+    private final Bucket[] direct = buckets();
+
+    /**
+     * Constructs a BufferPool which retains two buffers per processor
+     * for each capacity class and evicts buffers idle for a minute.
+     */
+    public BufferPool() {
+        this(2 * Runtime.getRuntime().availableProcessors(), 1, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Constructs a BufferPool.
+     *
+     * @param retention   the max count of retained buffers of each capacity class
+     * @param idleTimeout the time after which a retained buffer is evicted
+     * @param unit        the unit of the idle timeout
+     */
+    public BufferPool(int retention, long idleTimeout, TimeUnit unit) {
+        this(retention, unit.toNanos(idleTimeout), System::nanoTime);
+    }
+
+    BufferPool(int retention, long idleNanos, LongSupplier clock) {
+        if (retention < 0 || idleNanos < 0) {
+            throw new IllegalArgumentException("Retention is " + retention + ", idle timeout is " + idleNanos + "ns!");
+        }
+        this.retention = retention;
+        this.idleTimeout = idleNanos;
+        this.clock = clock;
+    }
+
+    private static Bucket[] buckets() {
+        final Bucket[] buckets = new Bucket[MAX_CLASS + 1];
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new Bucket();
+        }
+        return buckets;
+    }
+
+    /**
+     * Returns a cleared buffer whose capacity is the least power of two
+     * which isn't less than the requested capacity.
+     *
+     * @param capacity the min capacity of the buffer
+     * @param direct   whether the buffer should be direct
+     * @return the reused or newly allocated buffer
+     */
+    public ByteBuffer acquire(int capacity, boolean direct) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity is " + capacity + " bytes!");
+        }
+        final int index = capacityClass(capacity);
+
+        if (index <= MAX_CLASS) {
+            final Bucket bucket = bucket(index, direct);
+            final long now = clock.getAsLong();
+
+            evictIdle(bucket, now);
+
+            final Entry entry = bucket.buffers.pollFirst();
+            if (entry != null) {
+                bucket.size.decrementAndGet();
+                return entry.buffer.clear();
+            }
+        }
+        final int size = (index < Integer.SIZE - 1) ? 1 << index : capacity;
+        return direct ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
+    }
+
+    /**
+     * Returns the buffer to the pool, it shouldn't be used after releasing.
+     * Drops buffers whose capacity isn't a power of two or whose class is full.
+     *
+     * @param buffer the previously acquired buffer
+     */
+    public void release(ByteBuffer buffer) {
+        final int capacity = buffer.capacity();
+        if (buffer.isReadOnly() || Integer.bitCount(capacity) != 1) return;
+
+        final int index = capacityClass(capacity);
+        if (index > MAX_CLASS) return;
+
+        final Bucket bucket = bucket(index, buffer.isDirect());
+        final long now = clock.getAsLong();
+
+        evictIdle(bucket, now);
+
+        if (bucket.size.incrementAndGet() <= retention) {
+            bucket.buffers.offerFirst(new Entry(buffer, now));
+        } else {
+            bucket.size.decrementAndGet();
+        }
+    }
+
+    /**
+     * Returns the count of retained buffers.
+     */
+    int retained() {
+        int count = 0;
+        for (int i = 0; i <= MAX_CLASS; i++) {
+            count += heap[i].size.get() + direct[i].size.get();
+        }
+        return count;
+    }
+
+    private Bucket bucket(int index, boolean isDirect) {
+        return isDirect ? direct[index] : heap[index];
+    }
+
+    /**
+     * Evicts buffers from the tail of the bucket, where the oldest buffers are placed.
+     */
+    private void evictIdle(Bucket bucket, long now) {
+        for (Entry last; (last = bucket.buffers.peekLast()) != null && now - last.released > idleTimeout; ) {
+            if (bucket.buffers.removeLastOccurrence(last)) {
+                bucket.size.decrementAndGet();
+            }
+        }
+    }
+
+    private static int capacityClass(int capacity) {
+        return Integer.SIZE - Integer.numberOfLeadingZeros(capacity - 1);
+    }
+
+    private static final class Bucket {
+        private final AtomicInteger size = new AtomicInteger();
+        private final ConcurrentLinkedDeque<Entry> buffers = new ConcurrentLinkedDeque<>();
+    }
+
+    private static final class Entry {
+
+        private final long released;
+        private final ByteBuffer buffer;
+
+        private Entry(ByteBuffer buffer, long released) {
+            this.buffer = buffer;
+            this.released = released;
+        }
+    }
+}
@@ -0,0 +1,516 @@
+/*
+ * Copyright 2018 Alexey Zhytnik
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zhytnik.reactive.io;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.Flow.Publisher;
+import java.util.concurrent.Flow.Subscriber;
+import java.util.concurrent.Flow.Subscription;
+
+/**
+ * A row by row reader of CSV and TSV files which splits rows into fields in the same
+ * pass over bytes as it finds ends of rows, so there're no strings and arrays per row:
+ * a row carries a buffer and offsets of its fields in reusable arrays. Only projected
+ * columns could be recorded. Rows are terminated like lines of {@link LineReader},
+ * except line terminators inside quoted fields. A quoted field could contain separators,
+ * line terminators and quotes which are escaped by doubling ({@code ""}). Reads the file
+ * with memory settings of a {@link LineReader}, so rows are read by the same memory.
+ *
+ * @author Alexey Zhytnik
+ */
+public final class CsvReader implements Publisher<CsvReader.Row> {
+
+    /**
+     * A value which is never equal to a byte.
+     */
+    private static final int NO_QUOTE = 256;
+
+    private final LineReader reader;
+    private final byte separator;
+    private final int quote;
+    private final int[] columns;
+
+    /**
+     * Constructs a CsvReader of comma separated values with double quotes.
+     *
+     * @param path the path to file for reading
+     */
+    public CsvReader(Path path) {
+        this(new Builder(new LineReader(path)));
+    }
+
+    private CsvReader(Builder builder) {
+        this.reader = builder.reader;
+        this.separator = builder.separator;
+        this.quote = builder.quote;
+        this.columns = builder.columns;
+    }
+
+    /**
+     * Creates a builder of a CsvReader which reads the file of the LineReader
+     * with its memory settings (memory, pages, mapping, pool and gzip).
+     * Lines which are skipped by {@link LineReader.Builder#fromLine(long)} are skipped rows.
+     *
+     * @param reader the reader of the whole file
+     * @return the builder with default settings
+     */
+    public static Builder builder(LineReader reader) {
+        return new Builder(reader);
+    }
+
+    /**
+     * Reads the file by rows. Follows {@link LineReader} contract: reads only requested
+     * count of rows, if the end of the file is reached before requested row count then
+     * {@link LineReader.NoSuchLineCountException} is thrown.
+     * The same row instance is sent each time.
+     * Warnings: a row and its bytes exist only inside invoked body of {@link Subscriber#onNext(Object)},
+     * do not change bytes of the row's buffer.
+     *
+     * @param subscriber the subscriber-reader
+     * @see LineReader#subscribe(Subscriber)
+     */
+    @Override
+    public void subscribe(Subscriber<? super Row> subscriber) {
+        try (final RowRequest r = new RowRequest(subscriber, reader.awaits())) {
+            subscriber.onSubscribe(r);
+
+            if (r.awaitDemand()) {
+                final LineReader.MemoryAllocator allocator = reader.allocator();
+                try {
+                    reader.files().subscribe(new RowParser(r, allocator));
+                } finally {
+                    if (allocator != null) allocator.release();
+                }
+            }
+        }
+    }
+
+    /**
+     * Represents a row which is placed in a buffer from position to limit (exclusive).
+     * Field {@code i} is placed from {@code starts()[i]} to {@code ends()[i]} (exclusive)
+     * absolute indexes of the buffer. Enclosing quotes aren't part of fields, but escaped
+     * quotes of quoted fields are kept doubled. If columns are projected, field {@code i}
+     * is the value of {@code i}-th projected column, offsets of missing columns are {@code -1}.
+     *
+     * @author Alexey Zhytnik
+     */
+    public static final class Row {
+
+        private static final int INITIAL_CAPACITY = 16;
+
+        private int size;
+        private ByteBuffer buffer;
+        private int[] starts = new int[INITIAL_CAPACITY];
+        private int[] ends = new int[INITIAL_CAPACITY];
+        private boolean[] quoted = new boolean[INITIAL_CAPACITY];
+
+        private Row() {
+        }
+
+        /**
+         * @return the buffer with the row
+         */
+        public ByteBuffer buffer() {
+            return buffer;
+        }
+
+        /**
+         * @return the field count of the row or the count of projected columns
+         */
+        public int size() {
+            return size;
+        }
+
+        /**
+         * @param field the index of field
+         * @return the index of the first byte of the field
+         */
+        public int start(int field) {
+            return starts[field];
+        }
+
+        /**
+         * @param field the index of field
+         * @return the index after the last byte of the field
+         */
+        public int end(int field) {
+            return ends[field];
+        }
+
+        /**
+         * @param field the index of field
+         * @return {@code true} if the field was enclosed in quotes, so it could contain escaped quotes
+         */
+        public boolean quoted(int field) {
+            return quoted[field];
+        }
+
+        /**
+         * @return starts of fields, only first {@link #size()} values are valid
+         */
+        public int[] starts() {
+            return starts;
+        }
+
+        /**
+         * @return ends of fields, only first {@link #size()} values are valid
+         */
+        public int[] ends() {
+            return ends;
+        }
+
+        private void set(int field, int start, int end, boolean quoted) {
+            if (field >= starts.length) {
+                final int capacity = Math.max(2 * starts.length, field + 1);
+                starts = Arrays.copyOf(starts, capacity);
+                ends = Arrays.copyOf(ends, capacity);
+                this.quoted = Arrays.copyOf(this.quoted, capacity);
+            }
+            starts[field] = start;
+            ends[field] = end;
+            this.quoted[field] = quoted;
+        }
+    }
+
+    /**
+     * A FileReader subscriber which splits the content into rows and fields by one scan.
+     * Between invocations saves start of the unfinished row at mark position and
+     * offsets of its fields relative to it, so the row survives moving of bytes by memory.
+     * A quote at the end of a chunk is rescanned with the next byte.
+     */
+    private final class RowParser implements Subscriber<ByteBuffer> {
+
+        private long skip;
+        private int scanned;
+        private boolean eof;
+        private boolean ignoreLF;
+        private Runnable interrupter;
+        private ByteBuffer lastChunk;
+
+        private int column;
+        private int fieldStart;
+        private int quoteEnd;
+        private boolean inQuotes;
+        private boolean quotedField;
+
+        private final Row row;
+        private final int[] slots;
+        private final RowRequest request;
+        private final LineReader.MemoryAllocator allocator;
+
+        private RowParser(RowRequest request, LineReader.MemoryAllocator allocator) {
+            this.request = request;
+            this.allocator = allocator;
+            this.skip = reader.skip();
+            this.row = request.row;
+            this.slots = slots();
+            startRow();
+        }
+
+        /**
+         * Maps indexes of columns to indexes of projected fields.
+         */
+        private int[] slots() {
+            if (columns == null) return null;
+
+            final int[] slots = new int[Arrays.stream(columns).max().orElse(-1) + 1];
+            Arrays.fill(slots, -1);
+
+            for (int i = 0; i < columns.length; i++) {
+                slots[columns[i]] = i;
+            }
+            return slots;
+        }
+
+        @Override
+        public void onSubscribe(Subscription s) {
+            reader.configure((FileReader.ReadSubscription) s, allocator);
+            s.request(Long.MAX_VALUE);
+            interrupter = s::cancel;
+        }
+
+        @Override
+        public void onNext(ByteBuffer chunk) {
+            final int limit = chunk.limit();
+            final int nextStart = parse(chunk, limit);
+
+            chunk.limit(limit);
+            if (request.parsed(chunk)) {
+                lastChunk = chunk.position(nextStart).mark();
+            } else {
+                interrupter.run();
+            }
+        }
+
+        private int parse(ByteBuffer chunk, int limit) {
+            int rowStart = chunk.reset().position();
+            int i = rowStart + scanned;
+
+            while (i < limit) {
+                final byte c = chunk.get(i);
+
+                if (ignoreLF) {
+                    ignoreLF = false;
+                    if (c == '\n') {
+                        rowStart = ++i;
+                        continue;
+                    }
+                }
+                if (inQuotes) {
+                    if (c == quote) {
+                        if (i + 1 == limit && !eof) break;
+
+                        if (i + 1 < limit && chunk.get(i + 1) == quote) {
+                            i += 2;
+                            continue;
+                        }
+                        inQuotes = false;
+                        quoteEnd = i - rowStart;
+                    }
+                    i++;
+                } else if (c == separator) {
+                    field(i - rowStart);
+                    fieldStart = ++i - rowStart;
+                } else if (c == '\n' || c == '\r') {
+                    field(i - rowStart);
+                    final boolean active = row(chunk, rowStart, i);
+                    chunk.limit(limit);
+
+                    rowStart = ++i;
+                    ignoreLF = c == '\r';
+
+                    if (!active) break;
+                } else {
+                    if (c == quote && i - rowStart == fieldStart) {
+                        inQuotes = true;
+                        quotedField = true;
+                    }
+                    i++;
+                }
+            }
+            scanned = i - rowStart;
+            return rowStart;
+        }
+
+        /**
+         * Records the field which ends at the relative index.
+         */
+        private void field(int end) {
+            final int slot = (slots == null) ? column : (column < slots.length ? slots[column] : -1);
+
+            if (slot >= 0) {
+                if (quotedField) {
+                    row.set(slot, fieldStart + 1, inQuotes ? end : quoteEnd, true);
+                } else {
+                    row.set(slot, fieldStart, end, false);
+                }
+            }
+            column++;
+            quotedField = false;
+            inQuotes = false;
+        }
+
+        /**
+         * Sends the row with absolute offsets of fields and prepares the next one.
+         *
+         * @return {@code false} to stop parsing
+         */
+        private boolean row(ByteBuffer chunk, int start, int end) {
+            boolean active = true;
+
+            if (skip > 0) {
+                skip--;
+            } else {
+                row.size = (slots == null) ? column : columns.length;
+
+                for (int f = 0; f < row.size; f++) {
+                    if (row.starts[f] >= 0) {
+                        row.starts[f] += start;
+                        row.ends[f] += start;
+                    }
+                }
+                active = request.line(chunk, start, end);
+            }
+            startRow();
+            return active;
+        }
+
+        private void startRow() {
+            column = 0;
+            fieldStart = 0;
+            if (slots != null) {
+                for (int f = 0; f < columns.length; f++) {
+                    row.set(f, -1, -1, false);
+                }
+            }
+        }
+
+        /**
+         * Sends the unfinished row, a quote at the end of the file closes the field,
+         * an unclosed quote is closed by the end of the file.
+         */
+        @Override
+        public void onComplete() {
+            if (lastChunk != null && lastChunk.reset().hasRemaining() && request.proceeds()) {
+                final int end = lastChunk.limit();
+
+                eof = true;
+                final int start = parse(lastChunk, end);
+                lastChunk.limit(end);
+
+                field(end - start);
+                row(lastChunk, start, end);
+                request.parsed(lastChunk);
+            }
+        }
+
+        @Override
+        public void onError(Throwable e) {
+            request.onError(e);
+        }
+    }
+
+    private static final class RowRequest extends LineReader.LineRequest {
+
+        private final Row row = new Row();
+        private final Subscriber<? super Row> subscriber;
+
+        private RowRequest(Subscriber<? super Row> subscriber, boolean awaits) {
+            super("rows", awaits);
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        boolean line(ByteBuffer chunk, int start, int end) {
+            if (!awaitDemand()) return false;
+
+            chunk.limit(end).position(start);
+            row.buffer = chunk;
+            subscriber.onNext(row);
+            row.buffer = null;
+            produced(1);
+            return proceeds();
+        }
+
+        @Override
+        void fail(Throwable e) {
+            subscriber.onError(e);
+        }
+
+        @Override
+        void complete(long remain) {
+            finish(subscriber, remain);
+        }
+    }
+
+    /**
+     * A builder of CsvReader. By default fields are separated by commas
+     * and could be enclosed in double quotes, all columns are recorded.
+     *
+     * @author Alexey Zhytnik
+     */
+    public static final class Builder {
+
+        private byte separator = ',';
+        private int quote = '"';
+        private int[] columns;
+
+        private final LineReader reader;
+
+        private Builder(LineReader reader) {
+            this.reader = reader;
+        }
+
+        /**
+         * Sets the byte which separates fields.
+         *
+         * @param separator the separator, not a line terminator
+         * @return this builder
+         */
+        public Builder separator(byte separator) {
+            if (separator == '\n' || separator == '\r') {
+                throw new IllegalArgumentException("Separator is a line terminator!");
+            }
+            this.separator = separator;
+            return this;
+        }
+
+        /**
+         * Sets the byte which encloses fields.
+         *
+         * @param quote the quote, not a line terminator
+         * @return this builder
+         */
+        public Builder quote(byte quote) {
+            if (quote == '\n' || quote == '\r') {
+                throw new IllegalArgumentException("Quote is a line terminator!");
+            }
+            this.quote = quote;
+            return this;
+        }
+
+        /**
+         * Reads tab separated values, quotes are regular bytes of fields.
+         *
+         * @return this builder
+         */
+        public Builder tsv() {
+            this.separator = '\t';
+            this.quote = NO_QUOTE;
+            return this;
+        }
+
+        /**
+         * Records only the columns, other fields are scanned but not recorded.
+         *
+         * @param columns distinct indexes of columns in order of fields of rows, starting from 0
+         * @return this builder
+         */
+        public Builder columns(int... columns) {
+            for (int i = 0; i < columns.length; i++) {
+                if (columns[i] < 0) {
+                    throw new IllegalArgumentException("Column index is " + columns[i] + "!");
+                }
+                for (int j = 0; j < i; j++) {
+                    if (columns[i] == columns[j]) {
+                        throw new IllegalArgumentException("Column " + columns[i] + " is repeated!");
+                    }
+                }
+            }
+            this.columns = columns.clone();
+            return this;
+        }
+
+        /**
+         * Creates a CsvReader with specified settings.
+         * Throws {@link IllegalArgumentException} if the separator is the quote
+         * or the reader reads a byte range or records of a custom delimiter.
+         *
+         * @return the CsvReader
+         */
+        public CsvReader build() {
+            if (separator == quote) {
+                throw new IllegalArgumentException("Separator is the quote!");
+            }
+            if (reader.start() != 0 || reader.end() != Long.MAX_VALUE || reader.delimited()) {
+                throw new IllegalArgumentException("Rows could be read only from the whole file by lines!");
+            }
+            return new CsvReader(this);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2018 Alexey Zhytnik
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zhytnik.reactive.io;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Searches custom record delimiters in chunks of a file. The first byte of a delimiter
+ * is searched by 8 bytes at a time like {@link SwarTerminators} does, other bytes
+ * are compared only at found positions.
+ *
+ * @author Alexey Zhytnik
+ */
+final class Delimiters {
+
+    private static final long ONES = 0x0101010101010101L;
+
+    private Delimiters() {
+    }
+
+    /**
+     * Finds the first delimiter which is entirely placed in the chunk from {@code from}
+     * to {@code to} (exclusive). A delimiter which starts before {@code to} but doesn't
+     * end before it could be placed only in the last {@code delimiter.length - 1} bytes.
+     * Doesn't change position, limit and mark of the chunk.
+     *
+     * @return the index of the delimiter's first byte or {@code to} if there's no delimiter
+     */
+    static int indexOf(ByteBuffer chunk, byte[] delimiter, int from, int to) {
+        final int last = to - delimiter.length;
+
+        for (int i = indexOf(chunk, delimiter[0], from, last + 1); i <= last;
+             i = indexOf(chunk, delimiter[0], i + 1, last + 1)) {
+
+            if (matches(chunk, delimiter, i)) return i;
+        }
+        return to;
+    }
+
+    /**
+     * Finds the first byte {@code b} in the chunk from {@code from} to {@code to} (exclusive).
+     *
+     * @return the index of the byte or {@code to} if there's no such byte
+     */
+    static int indexOf(ByteBuffer chunk, byte b, int from, int to) {
+        final boolean bigEndian = chunk.order() == ByteOrder.BIG_ENDIAN;
+        final long pattern = (b & 0xFFL) * ONES;
+
+        int i = from;
+        for (; i <= to - Long.BYTES; i += Long.BYTES) {
+            final long found = SwarTerminators.zeros(chunk.getLong(i) ^ pattern);
+
+            if (found != 0) {
+                return i + ((bigEndian ? Long.numberOfLeadingZeros(found) : Long.numberOfTrailingZeros(found)) >>> 3);
+            }
+        }
+        for (; i < to; i++) {
+            if (chunk.get(i) == b) return i;
+        }
+        return to;
+    }
+
+    private static boolean matches(ByteBuffer chunk, byte[] delimiter, int index) {
+        for (int i = 1; i < delimiter.length; i++) {
+            if (chunk.get(index + i) != delimiter[i]) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2018 Alexey Zhytnik
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zhytnik.reactive.io;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Lock-free accounting of requested demand which could be signaled from any thread.
+ * A value of {@code Long.MAX_VALUE} means unbounded demand, it's never decreased.
+ * A reading thread which has no demand parks until a requesting thread signals it.
+ *
+ * @author Alexey Zhytnik
+ */
+final class Demand {
+
+    private Demand() {
+    }
+
+    /**
+     * Adds requested demand, an overflow produces unbounded demand.
+     *
+     * @return the demand after addition
+     */
+    static long add(AtomicLong requested, long n) {
+        for (; ; ) {
+            final long current = requested.get();
+            if (current == Long.MAX_VALUE) return current;
+
+            final long next = (n == Long.MAX_VALUE || current + n < 0) ? Long.MAX_VALUE : current + n;
+            if (requested.compareAndSet(current, next)) return next;
+        }
+    }
+
+    /**
+     * Subtracts produced items from bounded demand.
+     */
+    static void produced(AtomicLong requested, long n) {
+        for (; ; ) {
+            final long current = requested.get();
+            if (current == Long.MAX_VALUE) return;
+
+            if (requested.compareAndSet(current, current - n)) return;
+        }
+    }
+
+    /**
+     * Parks the current thread while it's blocked, for example while there's no demand.
+     * The thread is registered as the waiter, so {@link #signal(AtomicReference)}
+     * from any thread unparks it, after that the condition is checked again.
+     *
+     * @throws InterruptedException if the thread is interrupted
+     */
+    static void await(AtomicReference<Thread> waiter, BooleanSupplier blocked) throws InterruptedException {
+        while (blocked.getAsBoolean()) {
+            waiter.set(Thread.currentThread());
+
+            if (blocked.getAsBoolean()) LockSupport.park(waiter);
+
+            waiter.set(null);
+            if (Thread.interrupted()) throw new InterruptedException();
+        }
+    }
+
+    /**
+     * Unparks the waiter if there's one, should be invoked after each change of demand or state.
+     */
+    static void signal(AtomicReference<Thread> waiter) {
+        final Thread thread = waiter.get();
+        if (thread != null) LockSupport.unpark(thread);
+    }
+}
@@ -15,20 +15,23 @@
  */
 package com.zhytnik.reactive.io;
 
-import java.io.Closeable;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
 import java.util.concurrent.Flow.Publisher;
 import java.util.concurrent.Flow.Subscriber;
 import java.util.concurrent.Flow.Subscription;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Supplier;
 
 /**
  * A file reader which reads requested bytes of a file by {@link ByteBuffer}.
- * Needs custom memory provider {@link ReadSubscription#setAllocator(Supplier)}.
+ * Needs custom memory provider {@link ReadSubscription#setAllocator(Supplier)}
+ * or memory mapping of the file {@link ReadSubscription#setMapping(int)}.
  *
  * @author Alexey Zhytnik
  */
@@ -43,7 +46,8 @@ public final class FileReader implements Publisher<ByteBuffer> {
     /**
      * Reads the file. Fails fast on any {@link IOException}.
      * Reads file content by ByteBuffers provided by custom memory allocator until
-     * requested byte count is read. Invokes {@link Subscriber#onNext(Object)}
+     * requested byte count is read (see {@link ReadSubscription#setAwaiting(boolean)}
+     * for requests after read bytes). Invokes {@link Subscriber#onNext(Object)}
      * only with content which is placed from position to limit (exclusive),
      * never invokes {@link Subscriber#onNext(Object)} without file content.
      * Warning: the file content should not be modified during subscription,
@@ -54,23 +58,26 @@ public final class FileReader implements Publisher<ByteBuffer> {
      */
     @Override
     public void subscribe(Subscriber<? super ByteBuffer> subscriber) {
-        try (final ReadRequest r = new ReadRequest(subscriber)) {
+        final ReadRequest r = new ReadRequest(subscriber);
+        try {
             subscriber.onSubscribe(r);
 
-            if (r.isActive()) r.tryInitialize();
+            if (r.awaitDemand()) r.tryInitialize();
 
-            while (r.isActive()) {
-                final ByteBuffer chunk = r.allocator.get();
-                final int progress = r.resource.read(chunk, r.position());
-
-                chunk.limit(chunk.position());
-                chunk.position(chunk.limit() - progress);
+            while (r.awaitDemand()) {
+                final ByteBuffer chunk = r.nextChunk();
+                final int progress = chunk.remaining();
 
                 subscriber.onNext(chunk);
                 r.update(progress);
             }
+        } catch (InterruptedException error) {
+            Thread.currentThread().interrupt();
+            r.onError(error);
         } catch (Exception error) {
-            subscriber.onError(error);
+            r.onError(error);
+        } finally {
+            r.close();
         }
     }
 
@@ -99,8 +106,43 @@ public final class FileReader implements Publisher<ByteBuffer> {
         void setAllocator(Supplier<ByteBuffer> allocator);
 
         /**
-         * Adds bytes for reading. Needs installed path and memory allocator,
-         * otherwise throws {@link IllegalStateException}.
+         * Switches reading to memory mapping of the file, installed memory allocator isn't used then.
+         * Each chunk is a part of a read-only {@link MappedByteBuffer} window of the file,
+         * so file content isn't copied into the heap and read system calls aren't done.
+         * Like a memory allocator it keeps previously returned bytes from mark to limit (exclusive):
+         * when reading reaches the end of the window, next window starts from the marked byte.
+         * A subscriber should move the mark forward, otherwise windows grow until
+         * they reach 2GB limit of a {@link ByteBuffer}.
+         *
+         * @param window the byte count which is mapped after already read bytes
+         */
+        void setMapping(int window);
+
+        /**
+         * Restricts reading to the byte range of the file, by default the whole file is read.
+         * Requested byte count is counted from the start of the range,
+         * a value of {@code Long.MAX_VALUE} is request to read the whole range.
+         * The end of the range is truncated to the file's size.
+         *
+         * @param from the position of the first byte for reading
+         * @param to   the position after the last byte for reading
+         */
+        void setRange(long from, long to);
+
+        /**
+         * By default reading completes when requested bytes are read. In awaiting mode
+         * the subscribing thread waits for next requests instead, so bytes could be requested
+         * from other threads after {@link Subscriber#onNext(Object)} returned.
+         * Then reading before the end of the file (or the range) is finished only by cancellation
+         * or by interruption of the thread, which fails the subscription.
+         *
+         * @param awaiting whether reading waits for next requests
+         */
+        void setAwaiting(boolean awaiting);
+
+        /**
+         * Adds bytes for reading, could be invoked from any thread. Needs installed path
+         * and memory allocator, otherwise throws {@link IllegalStateException}.
          * A value of {@code Long.MAX_VALUE} is request to read all file,
          * in other cases if requested byte count is negative or greater
          * than the file's size then {@link IllegalArgumentException} will be thrown.
@@ -111,40 +153,157 @@ public final class FileReader implements Publisher<ByteBuffer> {
         void request(long bytes);
 
         /**
-         * Stops reading, all used resources will be released after invoking.
+         * Stops reading, could be invoked from any thread.
+         * All used resources will be released after invoking.
          */
         @Override
         void cancel();
     }
 
-    private static final class ReadRequest implements ReadSubscription, Closeable {
+    /**
+     * Accounting of cumulative requests of bytes of a range, which is shared by file readers.
+     * Requested byte count is counted from the start of the range, a value of {@code Long.MAX_VALUE}
+     * is request to read up to the end. Demand and cancellation are signaled from any thread
+     * without locks, reading and all signals to the subscriber happen in the subscribing thread,
+     * in awaiting mode it's parked while there're no requested bytes.
+     * Errors of requests are kept until the reading loop sends them.
+     *
+     * @author Alexey Zhytnik
+     */
+    abstract static class RangeRequest implements Subscription {
+
+        Path path;
+        long from;
+        long to = Long.MAX_VALUE;
+        long max = Long.MAX_VALUE;
+        long limit;
+        long position;
+        boolean awaiting;
+
+        private volatile boolean cancelled;
+        private final AtomicLong requested = new AtomicLong();
+        private final AtomicReference<Throwable> error = new AtomicReference<>();
+        private final AtomicReference<Thread> waiter = new AtomicReference<>();
+
+        private final Subscriber<?> subscriber;
+
+        RangeRequest(Subscriber<?> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        /**
+         * Tells whether there're requested bytes for reading and updates the limit of reading.
+         */
+        final boolean isActive() {
+            limit = limit();
+            return isOpen() && position < limit;
+        }
+
+        final boolean isOpen() {
+            return !cancelled && error.get() == null;
+        }
+
+        /**
+         * Waits for requests in awaiting mode while all requested bytes are read before the end.
+         *
+         * @return {@code true} if there're bytes for reading
+         */
+        final boolean awaitDemand() throws InterruptedException {
+            Demand.await(waiter, () -> awaiting && !isActive() && isOpen() && position < max);
+            return isActive();
+        }
+
+        private long limit() {
+            final long bytes = requested.get();
+
+            if (bytes == Long.MAX_VALUE) return max;
+
+            if (bytes > max - from) {
+                onError(new IllegalArgumentException(path + " contains only " + (max - from) + " bytes!"));
+                return position;
+            }
+            return from + bytes;
+        }
+
+        /**
+         * Checks settings of the subscription before requests.
+         *
+         * @return the error of wrong settings or {@code null}
+         */
+        Exception misconfiguration() {
+            return null;
+        }
+
+        @Override
+        public final void request(long bytes) {
+            final Exception e = misconfiguration();
+
+            if (e != null) {
+                onError(e);
+            } else if (bytes < 0) {
+                onError(new IllegalArgumentException("Requested " + bytes + " bytes!"));
+            } else {
+                Demand.add(requested, bytes);
+                Demand.signal(waiter);
+            }
+        }
+
+        final void onError(Throwable e) {
+            error.compareAndSet(null, e);
+            Demand.signal(waiter);
+        }
+
+        @Override
+        public final void cancel() {
+            cancelled = true;
+            Demand.signal(waiter);
+        }
+
+        /**
+         * Releases used resources and sends the terminal signal.
+         */
+        final void close() {
+            try {
+                release();
+            } catch (IOException e) {
+                if (!cancelled) onError(e);
+            }
+            final long end = limit();
+            final Throwable e = error.get();
+
+            if (e != null) {
+                subscriber.onError(e);
+            } else if (!cancelled && position == end) {
+                subscriber.onComplete();
+            }
+        }
+
+        /**
+         * Releases used resources, if they were opened.
+         */
+        abstract void release() throws IOException;
+    }
+
+    private static final class ReadRequest extends RangeRequest implements ReadSubscription {
 
-        private long max;
-        private long limit;
-        private long position;
-        private boolean interrupted;
+        private int window;
+        private long mappingStart;
+        private MappedByteBuffer mapping;
 
-        private Path path;
         private FileChannel resource;
         private Supplier<ByteBuffer> allocator;
 
-        private final Subscriber subscriber;
-
         private ReadRequest(Subscriber subscriber) {
-            this.max = Long.MAX_VALUE;
-            this.subscriber = subscriber;
+            super(subscriber);
         }
 
         private void tryInitialize() throws IOException {
-            final long firstRequestedBytes = limit;
-
-            interrupted = true;
             resource = FileChannel.open(path, StandardOpenOption.READ);
-            max = resource.size();
+            max = Math.min(resource.size(), to);
 
-            limit = 0;
-            interrupted = false;
-            request(firstRequestedBytes);
+            if (from > max) {
+                onError(new IllegalArgumentException(path + " contains only " + max + " bytes!"));
+            }
         }
 
         @Override
@@ -157,55 +316,79 @@ public final class FileReader implements Publisher<ByteBuffer> {
             this.allocator = allocator;
         }
 
-        private boolean isActive() {
-            return !interrupted && position < limit;
+        @Override
+        public void setMapping(int window) {
+            this.window = window;
         }
 
-        private long position() {
-            return position;
+        @Override
+        public void setRange(long from, long to) {
+            this.from = from;
+            this.to = to;
+            this.position = from;
         }
 
-        private void update(int progress) {
-            position += progress;
+        @Override
+        public void setAwaiting(boolean awaiting) {
+            this.awaiting = awaiting;
         }
 
-        @Override
-        public void request(long bytes) {
-            if (path == null || allocator == null) {
-                onError(new IllegalStateException("Both Path and Memory allocator should be installed!"));
-            } else if (bytes < 0) {
-                onError(new IllegalArgumentException("Requested " + bytes + " bytes!"));
-            } else if (bytes == Long.MAX_VALUE) {
-                limit = max;
-            } else if (limit + bytes <= max) {
-                limit += bytes;
-            } else {
-                onError(new IllegalArgumentException(path + " contains only " + max + " bytes!"));
+        private ByteBuffer nextChunk() throws IOException {
+            return window == 0 ? read() : map();
+        }
+
+        private ByteBuffer read() throws IOException {
+            final ByteBuffer chunk = allocator.get();
+
+            if (chunk.remaining() > limit - position) {
+                chunk.limit(chunk.position() + (int) (limit - position));
             }
+            final int progress = resource.read(chunk, position);
+
+            chunk.limit(chunk.position());
+            chunk.position(chunk.limit() - progress);
+            return chunk;
         }
 
-        private void onError(Throwable error) {
-            interrupted = true;
-            subscriber.onError(error);
+        private ByteBuffer map() throws IOException {
+            if (mapping == null || position >= mappingStart + mapping.capacity()) remap();
+
+            mapping.limit((int) (Math.min(limit, mappingStart + mapping.capacity()) - mappingStart));
+            mapping.position((int) (position - mappingStart));
+            return mapping;
         }
 
-        @Override
-        public void cancel() {
-            interrupted = true;
+        private void remap() throws IOException {
+            final long start = (mapping == null) ? position : mappingStart + mapping.reset().position();
+            final long size = Math.min(max - start, position - start + window);
+
+            if (size > Integer.MAX_VALUE) {
+                throw new IllegalStateException("Marked " + (position - start) + " bytes don't fit a window!");
+            }
+            mapping = resource.map(FileChannel.MapMode.READ_ONLY, start, size);
+            mapping.mark();
+            mappingStart = start;
+        }
+
+        private void update(int progress) {
+            position += progress;
         }
 
         @Override
-        public void close() {
-            if (resource != null) {
-                try {
-                    resource.close();
-                } catch (IOException e) {
-                    if (!interrupted) onError(e);
-                }
-            }
-            if (!interrupted && position == limit) {
-                subscriber.onComplete();
+        Exception misconfiguration() {
+            if (path == null || (allocator == null && window == 0)) {
+                return new IllegalStateException("Both Path and Memory allocator should be installed!");
+            } else if (window < 0) {
+                return new IllegalArgumentException("Mapping window is " + window + " bytes!");
+            } else if (from < 0 || to < from) {
+                return new IllegalArgumentException("Range [" + from + ", " + to + ") is wrong!");
             }
+            return null;
+        }
+
+        @Override
+        void release() throws IOException {
+            if (resource != null) resource.close();
         }
     }
 }
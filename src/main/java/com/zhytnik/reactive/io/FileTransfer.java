@@ -0,0 +1,156 @@
+/*
+ * Copyright 2018 Alexey Zhytnik
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zhytnik.reactive.io;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Flow.Publisher;
+import java.util.concurrent.Flow.Subscriber;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A file reader which transfers requested bytes of a file to a channel by
+ * {@link FileChannel#transferTo(long, long, WritableByteChannel)}, so bytes
+ * don't pass through memory of the JVM (an operating system could use
+ * {@code sendfile} or {@code splice} for sockets and pipes).
+ * Like {@link FileReader} it's driven by requests of bytes, but sends only
+ * counts of transferred bytes. The target channel isn't closed by the transfer.
+ *
+ * @author Alexey Zhytnik
+ */
+public final class FileTransfer implements Publisher<Long> {
+
+    private static final long STEP = 8 * 1024 * 1024;
+    private static final long PAUSE = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final Path path;
+    private final long from;
+    private final long to;
+    private final WritableByteChannel target;
+
+    /**
+     * Constructs a FileTransfer of the whole file.
+     *
+     * @param path   the path to file for reading
+     * @param target the channel which receives bytes of the file
+     */
+    public FileTransfer(Path path, WritableByteChannel target) {
+        this(path, 0, Long.MAX_VALUE, target);
+    }
+
+    /**
+     * Constructs a FileTransfer of the byte range of the file.
+     * The end of the range is truncated to the file's size.
+     *
+     * @param path   the path to file for reading
+     * @param from   the position of the first byte for transfer
+     * @param to     the position after the last byte for transfer
+     * @param target the channel which receives bytes of the file
+     */
+    public FileTransfer(Path path, long from, long to, WritableByteChannel target) {
+        if (from < 0 || to < from) {
+            throw new IllegalArgumentException("Range [" + from + ", " + to + ") is wrong!");
+        }
+        this.path = path;
+        this.from = from;
+        this.to = to;
+        this.target = target;
+    }
+
+    /**
+     * Transfers the file. Fails fast on any {@link IOException}.
+     * Transfers only requested byte count by steps of at most 8MB, a value of
+     * {@code Long.MAX_VALUE} is request to transfer the whole range. If requested
+     * byte count is negative or greater than the range then {@link IllegalArgumentException}
+     * will be thrown. Requests and cancellation could be signaled from any thread,
+     * cancellation stops the transfer after the current step.
+     * Invokes {@link Subscriber#onNext(Object)} with the byte count of each step.
+     * Warning: the file content should not be modified during subscription.
+     *
+     * @param subscriber the subscriber which receives counts of transferred bytes
+     */
+    @Override
+    public void subscribe(Subscriber<? super Long> subscriber) {
+        final TransferRequest r = new TransferRequest(subscriber);
+        try {
+            subscriber.onSubscribe(r);
+
+            if (r.awaitDemand()) r.tryInitialize();
+
+            while (r.awaitDemand()) {
+                final long progress = r.transfer();
+
+                if (progress > 0) subscriber.onNext(progress);
+            }
+        } catch (InterruptedException error) {
+            Thread.currentThread().interrupt();
+            r.onError(error);
+        } catch (Exception error) {
+            r.onError(error);
+        } finally {
+            r.close();
+        }
+    }
+
+    private final class TransferRequest extends FileReader.RangeRequest {
+
+        private FileChannel resource;
+
+        private TransferRequest(Subscriber<? super Long> subscriber) {
+            super(subscriber);
+            this.path = FileTransfer.this.path;
+            this.from = FileTransfer.this.from;
+            this.to = FileTransfer.this.to;
+            this.position = from;
+        }
+
+        private void tryInitialize() throws IOException {
+            resource = FileChannel.open(path, StandardOpenOption.READ);
+            max = Math.min(resource.size(), to);
+
+            if (from > max) {
+                onError(new IllegalArgumentException(path + " contains only " + max + " bytes!"));
+            }
+        }
+
+        /**
+         * Transfers the next step, waits a bit if the target isn't ready.
+         *
+         * @return the count of transferred bytes
+         */
+        private long transfer() throws IOException {
+            final long progress = resource.transferTo(position, Math.min(STEP, limit - position), target);
+
+            if (progress == 0) {
+                if (resource.size() <= position) throw new EOFException("File was truncated during transfer!");
+
+                LockSupport.parkNanos(PAUSE);
+            }
+            position += progress;
+            return progress;
+        }
+
+        @Override
+        void release() throws IOException {
+            if (resource != null) resource.close();
+        }
+    }
+}
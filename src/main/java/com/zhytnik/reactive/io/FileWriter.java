@@ -0,0 +1,377 @@
+/*
+ * Copyright 2018 Alexey Zhytnik
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zhytnik.reactive.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow.Subscriber;
+import java.util.concurrent.Flow.Subscription;
+
+/**
+ * A file writer which writes received buffers (e.g. lines of {@link LineReader}) into a file.
+ * Small buffers are copied into 64KB of direct memory and written together,
+ * buffers which don't fit it are written without copying together with copied ones
+ * by one gathering write {@link FileChannel#write(ByteBuffer[])}. An optional separator
+ * is written after each buffer, so lines could be written without their terminators.
+ * Requests next buffers only when previously requested ones are written,
+ * the file is synced to the storage device by the sync policy (by default never).
+ * The writer is single-use, the result of writing is available by {@link #result()}.
+ * Demand is counted in buffers, so publishers which count demand in bytes and need
+ * subscriber-side settings (e.g. {@link FileReader}) can't be written directly,
+ * their content could be written by lines of {@link LineReader}.
+ * A portion of buffers which isn't fully satisfied by the end of a file fails readers of this library
+ * by {@link LineReader.NoSuchLineCountException}: the writer completes on it only if its remaining
+ * count is exactly the unsent rest of the last portion, any other failure fails the result.
+ *
+ * @author Alexey Zhytnik
+ */
+public final class FileWriter implements Subscriber<ByteBuffer> {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final long DEMAND = 1024;
+
+    private final Path path;
+    private final boolean append;
+    private final long demand;
+    private final long syncSize;
+    private final boolean syncOnComplete;
+    private final ByteBuffer separator;
+
+    private final ByteBuffer buffer;
+    private final ByteBuffer[] gather = new ByteBuffer[3];
+    private final CompletableFuture<Long> result = new CompletableFuture<>();
+
+    private long written;
+    private long unsynced;
+    private long received;
+    private FileChannel channel;
+    private Subscription subscription;
+
+    /**
+     * Constructs a FileWriter which replaces content of the file and writes buffers without separators.
+     *
+     * @param path the path to file for writing
+     */
+    public FileWriter(Path path) {
+        this(new Builder(path));
+    }
+
+    private FileWriter(Builder builder) {
+        this.path = builder.path;
+        this.append = builder.append;
+        this.demand = builder.demand;
+        this.syncSize = builder.syncSize;
+        this.syncOnComplete = builder.syncOnComplete;
+        this.separator = ByteBuffer.wrap(builder.separator);
+        this.buffer = ByteBuffer.allocateDirect(builder.bufferSize);
+    }
+
+    /**
+     * Creates a builder of a FileWriter associated with the file.
+     *
+     * @param path the path to file for writing
+     * @return the builder with default settings
+     */
+    public static Builder builder(Path path) {
+        return new Builder(path);
+    }
+
+    /**
+     * Returns the result of writing: the count of written bytes
+     * or the failure of reading or writing.
+     *
+     * @return the result which is completed after the terminal signal
+     */
+    public CompletableFuture<Long> result() {
+        return result;
+    }
+
+    /**
+     * Opens the file and requests first buffers, cancels the subscription if the file can't be opened.
+     */
+    @Override
+    public void onSubscribe(Subscription s) {
+        if (subscription != null) {
+            s.cancel();
+            return;
+        }
+        subscription = s;
+        try {
+            channel = append
+                    ? FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)
+                    : FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        } catch (IOException e) {
+            fail(e);
+            return;
+        }
+        s.request(demand);
+    }
+
+    /**
+     * Writes bytes of the buffer from position to limit (exclusive), doesn't keep and change the buffer.
+     */
+    @Override
+    public void onNext(ByteBuffer item) {
+        if (channel == null) return;
+        try {
+            write(item);
+
+            if (++received == demand) {
+                flush();
+                received = 0;
+                subscription.request(demand);
+            }
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Completes writing if the publisher has no more lines for the rest of the last requested
+     * portion (see {@link LineReader.NoSuchLineCountException}), otherwise writes already received
+     * bytes, closes the file and completes the result by the failure.
+     */
+    @Override
+    public void onError(Throwable e) {
+        if (e instanceof LineReader.NoSuchLineCountException
+                && ((LineReader.NoSuchLineCountException) e).remain() == demand - received) {
+            onComplete();
+            return;
+        }
+        if (channel != null) {
+            try {
+                flush();
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+        }
+        fail(e);
+    }
+
+    /**
+     * Writes remaining bytes, syncs the file if it's required and closes it.
+     */
+    @Override
+    public void onComplete() {
+        if (channel == null) return;
+        try {
+            flush();
+            if (syncOnComplete || unsynced > 0 && syncSize != Long.MAX_VALUE) channel.force(false);
+
+            channel.close();
+            channel = null;
+            result.complete(written);
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    private void write(ByteBuffer item) throws IOException {
+        final int position = item.position();
+        final int size = item.remaining() + separator.capacity();
+
+        if (size > buffer.remaining()) {
+            if (size < buffer.capacity()) {
+                flush();
+            } else {
+                buffer.flip();
+                separator.clear();
+                gather[0] = buffer;
+                gather[1] = item;
+                gather[2] = separator;
+                write(gather);
+                buffer.clear();
+                item.position(position);
+                return;
+            }
+        }
+        buffer.put(item);
+        buffer.put(separator.array());
+        item.position(position);
+    }
+
+    /**
+     * Writes copied bytes.
+     */
+    private void flush() throws IOException {
+        buffer.flip();
+        gather[0] = buffer;
+        gather[1] = null;
+        write(gather);
+        buffer.clear();
+    }
+
+    private void write(ByteBuffer[] buffers) throws IOException {
+        final int length = (buffers[1] == null) ? 1 : buffers.length;
+
+        long progress = 0;
+        while (hasRemaining(buffers, length)) {
+            progress += channel.write(buffers, 0, length);
+        }
+        written += progress;
+        unsynced += progress;
+
+        if (unsynced >= syncSize) {
+            channel.force(false);
+            unsynced = 0;
+        }
+    }
+
+    private static boolean hasRemaining(ByteBuffer[] buffers, int length) {
+        for (int i = 0; i < length; i++) {
+            if (buffers[i].hasRemaining()) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Stops reading, closes the file and completes the result by the failure.
+     */
+    private void fail(Throwable e) {
+        if (subscription != null) subscription.cancel();
+
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            channel = null;
+        }
+        result.completeExceptionally(e);
+    }
+
+    /**
+     * A builder of FileWriter. By default content of the file is replaced,
+     * buffers are written without separators, buffers are requested by portions
+     * of 1024 and the file isn't synced.
+     *
+     * @author Alexey Zhytnik
+     */
+    public static final class Builder {
+
+        private boolean append;
+        private long demand = DEMAND;
+        private long syncSize = Long.MAX_VALUE;
+        private boolean syncOnComplete;
+        private int bufferSize = BUFFER_SIZE;
+        private byte[] separator = new byte[0];
+
+        private final Path path;
+
+        private Builder(Path path) {
+            this.path = path;
+        }
+
+        /**
+         * Writes buffers after content of the file instead of replacing it.
+         *
+         * @return this builder
+         */
+        public Builder append() {
+            this.append = true;
+            return this;
+        }
+
+        /**
+         * Writes the separator after each buffer, for example {@code '\n'} after lines.
+         *
+         * @param separator the bytes of the separator
+         * @return this builder
+         */
+        public Builder separator(byte... separator) {
+            this.separator = separator.clone();
+            return this;
+        }
+
+        /**
+         * Requests buffers by portions, the next portion is requested
+         * only when the previous one is written. Readers of this library fail
+         * a portion which isn't fully satisfied by {@link LineReader.NoSuchLineCountException},
+         * the writer treats it as the end of buffers only if it's the unsent rest of the portion.
+         * Use {@code Long.MAX_VALUE} to request all buffers at once.
+         *
+         * @param buffers the count of buffers which are requested at once
+         * @return this builder
+         */
+        public Builder demand(long buffers) {
+            if (buffers <= 0) {
+                throw new IllegalArgumentException("Demand is " + buffers + " buffers!");
+            }
+            this.demand = buffers;
+            return this;
+        }
+
+        /**
+         * Sets the size of memory for copies of small buffers.
+         *
+         * @param size the size in bytes
+         * @return this builder
+         */
+        public Builder bufferSize(int size) {
+            if (size <= 0) {
+                throw new IllegalArgumentException("Buffer size is " + size + " bytes!");
+            }
+            this.bufferSize = size;
+            return this;
+        }
+
+        /**
+         * Syncs the file each time when at least the byte count is written
+         * after the previous sync, and after the last write.
+         *
+         * @param bytes the count of bytes between syncs
+         * @return this builder
+         * @see FileChannel#force(boolean)
+         */
+        public Builder syncEvery(long bytes) {
+            if (bytes <= 0) {
+                throw new IllegalArgumentException("Sync size is " + bytes + " bytes!");
+            }
+            this.syncSize = bytes;
+            return this;
+        }
+
+        /**
+         * Syncs the file after the last write.
+         *
+         * @return this builder
+         * @see FileChannel#force(boolean)
+         */
+        public Builder syncOnComplete() {
+            this.syncOnComplete = true;
+            return this;
+        }
+
+        /**
+         * Creates a FileWriter with specified settings.
+         * Throws {@link IllegalArgumentException} if the separator doesn't fit the buffer.
+         *
+         * @return the FileWriter
+         */
+        public FileWriter build() {
+            if (separator.length >= bufferSize) {
+                throw new IllegalArgumentException("Separator of " + separator.length
+                        + " bytes doesn't fit buffer of " + bufferSize + " bytes!");
+            }
+            return new FileWriter(this);
+        }
+    }
+}
@@ -0,0 +1,391 @@
+/*
+ * Copyright 2018 Alexey Zhytnik
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zhytnik.reactive.io;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Flow.Publisher;
+import java.util.concurrent.Flow.Subscriber;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * A file reader of gzip files which reads requested bytes of decompressed content
+ * by {@link ByteBuffer}. Follows {@link FileReader} contract and accepts the same
+ * {@link FileReader.ReadSubscription}, so decompressed content is placed straight
+ * into memory of the custom memory provider without intermediate copies.
+ * Supports files of several concatenated gzip members, checks CRC-32 and size of each member.
+ * Differences from {@link FileReader}: memory mapping isn't supported, a range is
+ * a range of decompressed content, so bytes before its start are decompressed and skipped,
+ * the size of the content isn't known in advance, so requests which are greater
+ * than the content fail only at its end.
+ *
+ * @author Alexey Zhytnik
+ */
+public final class GzipFileReader implements Publisher<ByteBuffer> {
+
+    private static final int INPUT_SIZE = 8 * 4096;
+    private static final int SCRATCH_SIZE = 4096;
+
+    /**
+     * Constructs a GzipFileReader.
+     */
+    public GzipFileReader() {
+    }
+
+    /**
+     * Reads decompressed content of the file. Fails fast on any {@link IOException},
+     * broken content is reported by {@link ZipException}.
+     *
+     * @param subscriber the subscriber-reader
+     * @see FileReader#subscribe(Subscriber)
+     */
+    @Override
+    public void subscribe(Subscriber<? super ByteBuffer> subscriber) {
+        final ReadRequest r = new ReadRequest(subscriber);
+        try {
+            subscriber.onSubscribe(r);
+
+            if (r.awaitDemand()) r.tryInitialize();
+
+            while (r.awaitDemand()) {
+                final ByteBuffer chunk = r.nextChunk();
+
+                if (chunk != null) {
+                    final int progress = chunk.remaining();
+
+                    subscriber.onNext(chunk);
+                    r.update(progress);
+                }
+            }
+        } catch (InterruptedException error) {
+            Thread.currentThread().interrupt();
+            r.onError(error);
+        } catch (Exception error) {
+            r.onError(error);
+        } finally {
+            r.close();
+        }
+    }
+
+    /**
+     * The end of decompressed content becomes known only when it's reached,
+     * until then the end of the range is used as the end of reading.
+     */
+    private static final class ReadRequest extends FileReader.RangeRequest implements FileReader.ReadSubscription {
+
+        private int window;
+        private Members resource;
+        private Supplier<ByteBuffer> allocator;
+
+        private ReadRequest(Subscriber subscriber) {
+            super(subscriber);
+        }
+
+        private void tryInitialize() throws IOException {
+            resource = new Members(FileChannel.open(path, StandardOpenOption.READ));
+            max = to;
+
+            final long skipped = resource.skip(from);
+            if (skipped < from) {
+                onError(new IllegalArgumentException(path + " contains only " + skipped + " bytes!"));
+            }
+        }
+
+        @Override
+        public void setPath(Path path) {
+            this.path = path;
+        }
+
+        @Override
+        public void setAllocator(Supplier<ByteBuffer> allocator) {
+            this.allocator = allocator;
+        }
+
+        @Override
+        public void setMapping(int window) {
+            this.window = window;
+        }
+
+        @Override
+        public void setRange(long from, long to) {
+            this.from = from;
+            this.to = to;
+            this.position = from;
+        }
+
+        @Override
+        public void setAwaiting(boolean awaiting) {
+            this.awaiting = awaiting;
+        }
+
+        /**
+         * Decompresses next bytes into allocated memory. Memory is taken only
+         * if there are bytes for it, because the allocator could relocate
+         * marked bytes which the subscriber still refers to.
+         *
+         * @return the chunk or {@code null} if the end of the content is reached
+         */
+        private ByteBuffer nextChunk() throws IOException {
+            if (!resource.hasRemaining()) {
+                max = position;
+                return null;
+            }
+            final ByteBuffer chunk = allocator.get();
+            final int start = chunk.position();
+
+            if (chunk.remaining() > limit - position) {
+                chunk.limit(start + (int) (limit - position));
+            }
+            resource.read(chunk);
+
+            chunk.limit(chunk.position());
+            chunk.position(start);
+            return chunk;
+        }
+
+        private void update(int progress) {
+            position += progress;
+        }
+
+        @Override
+        Exception misconfiguration() {
+            if (window != 0) {
+                return new IllegalStateException("Memory mapping of compressed files isn't supported!");
+            } else if (path == null || allocator == null) {
+                return new IllegalStateException("Both Path and Memory allocator should be installed!");
+            } else if (from < 0 || to < from) {
+                return new IllegalArgumentException("Range [" + from + ", " + to + ") is wrong!");
+            }
+            return null;
+        }
+
+        @Override
+        void release() throws IOException {
+            if (resource != null) resource.close();
+        }
+    }
+
+    /**
+     * Decompresses gzip members of the file one by one (RFC 1952).
+     * Compressed bytes are read into a heap buffer, each member is inflated
+     * by the same raw {@link Inflater} which is reset between members.
+     * One byte is decompressed ahead, so the end of the content is known before reading.
+     *
+     * @author Alexey Zhytnik
+     */
+    private static final class Members implements AutoCloseable {
+
+        private static final int FHCRC = 2;
+        private static final int FEXTRA = 4;
+        private static final int FNAME = 8;
+        private static final int FCOMMENT = 16;
+
+        private final FileChannel channel;
+        private final ByteBuffer input = ByteBuffer.allocate(INPUT_SIZE).flip();
+        private final byte[] scratch = new byte[SCRATCH_SIZE];
+        private final Inflater inflater = new Inflater(true);
+        private final CRC32 crc = new CRC32();
+        private final ByteBuffer ahead = ByteBuffer.allocate(1);
+
+        private long offset;
+        private long members;
+        private boolean inside;
+
+        private Members(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        /**
+         * @return {@code true} if the content has bytes which weren't read
+         */
+        private boolean hasRemaining() throws IOException {
+            if (ahead.position() == 0 && inflate(ahead) > 0) return true;
+            return ahead.position() > 0;
+        }
+
+        /**
+         * Moves decompressed bytes into the output from its position to limit and moves the position.
+         *
+         * @return the count of read bytes or -1 if the content is finished
+         */
+        private int read(ByteBuffer output) throws IOException {
+            if (ahead.position() == 0) return inflate(output);
+
+            output.put(ahead.get(0));
+            ahead.clear();
+            return 1 + Math.max(inflate(output), 0);
+        }
+
+        /**
+         * Decompresses bytes into the output from its position to limit and moves the position.
+         *
+         * @return the count of decompressed bytes or -1 if the last member is finished
+         */
+        private int inflate(ByteBuffer output) throws IOException {
+            for (; ; ) {
+                if (!inside && !nextMember()) return -1;
+
+                if (inflater.finished()) {
+                    finishMember();
+                    continue;
+                }
+                if (inflater.needsInput()) {
+                    if (!ensure(1)) throw new EOFException("Unexpected end of gzip member!");
+
+                    inflater.setInput(input.array(), input.position(), input.remaining());
+                }
+                final int start = output.position();
+                final int progress;
+                try {
+                    progress = Inflaters.inflate(inflater, output, scratch);
+                } catch (DataFormatException e) {
+                    throw new ZipException(e.getMessage());
+                }
+                input.position(input.limit() - inflater.getRemaining());
+
+                if (progress > 0) {
+                    final int limit = output.limit();
+                    output.limit(start + progress);
+                    output.position(start);
+                    crc.update(output);
+                    output.limit(limit);
+                    return progress;
+                }
+                if (inflater.needsDictionary()) {
+                    throw new ZipException("Preset dictionaries aren't supported!");
+                }
+                if (!output.hasRemaining()) return 0;
+            }
+        }
+
+        /**
+         * Decompresses and drops the bytes.
+         *
+         * @return the count of skipped bytes, less than requested if the content is shorter
+         */
+        private long skip(long bytes) throws IOException {
+            final ByteBuffer buffer = ByteBuffer.wrap(scratch);
+            long skipped = 0;
+
+            while (skipped < bytes) {
+                buffer.clear().limit((int) Math.min(scratch.length, bytes - skipped));
+
+                final int progress = read(buffer);
+                if (progress < 0) break;
+
+                skipped += progress;
+            }
+            return skipped;
+        }
+
+        /**
+         * Reads the header of the next member.
+         *
+         * @return {@code false} if there's no next member
+         */
+        private boolean nextMember() throws IOException {
+            if (!ensure(1)) {
+                if (members == 0) throw new EOFException("File doesn't contain gzip members!");
+                return false;
+            }
+            crc.reset();
+
+            if (readByte() != 0x1f || readByte() != 0x8b) throw new ZipException("Not in gzip format!");
+            if (readByte() != 8) throw new ZipException("Unsupported compression method!");
+
+            final int flags = readByte();
+            for (int i = 0; i < 6; i++) readByte();
+
+            if ((flags & FEXTRA) != 0) {
+                final int length = readByte() | readByte() << 8;
+                for (int i = 0; i < length; i++) readByte();
+            }
+            if ((flags & FNAME) != 0) {
+                while (readByte() != 0) ;
+            }
+            if ((flags & FCOMMENT) != 0) {
+                while (readByte() != 0) ;
+            }
+            if ((flags & FHCRC) != 0) {
+                final int expected = (int) crc.getValue() & 0xffff;
+                if ((readByte() | readByte() << 8) != expected) throw new ZipException("Corrupt gzip header!");
+            }
+            crc.reset();
+            inflater.reset();
+            inflater.setInput(input.array(), input.position(), input.remaining());
+            inside = true;
+            members++;
+            return true;
+        }
+
+        /**
+         * Checks the trailer of the finished member.
+         */
+        private void finishMember() throws IOException {
+            final long checksum = crc.getValue();
+            final long size = inflater.getBytesWritten() & 0xffffffffL;
+
+            if (readInt() != checksum) throw new ZipException("Corrupt gzip trailer: wrong CRC-32!");
+            if (readInt() != size) throw new ZipException("Corrupt gzip trailer: wrong size!");
+
+            inside = false;
+        }
+
+        private long readInt() throws IOException {
+            return (readByte() | readByte() << 8 | readByte() << 16 | (long) readByte() << 24);
+        }
+
+        private int readByte() throws IOException {
+            if (!ensure(1)) throw new EOFException("Unexpected end of gzip member!");
+
+            final byte b = input.get();
+            crc.update(b);
+            return b & 0xff;
+        }
+
+        /**
+         * Reads the file until the input contains at least the byte count.
+         *
+         * @return {@code false} if the end of the file is reached before
+         */
+        private boolean ensure(int bytes) throws IOException {
+            while (input.remaining() < bytes) {
+                input.compact();
+                final int read = channel.read(input, offset);
+                input.flip();
+
+                if (read < 0) return false;
+
+                offset += read;
+            }
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            inflater.end();
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2018 Alexey Zhytnik
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zhytnik.reactive.io;
+
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Decompresses by {@link Inflater} into memory of a file reader.
+ * {@link Inflater} of Java 9 accepts only arrays, so direct memory is filled
+ * through the scratch array, the multi-release version for Java 17+
+ * decompresses straight into direct memory.
+ *
+ * @author Alexey Zhytnik
+ */
+final class Inflaters {
+
+    private Inflaters() {
+    }
+
+    /**
+     * Decompresses bytes into the output from its position to limit (exclusive) and moves the position.
+     *
+     * @return the count of decompressed bytes
+     */
+    static int inflate(Inflater inflater, ByteBuffer output, byte[] scratch) throws DataFormatException {
+        final int position = output.position();
+
+        if (output.hasArray()) {
+            final int progress = inflater.inflate(output.array(), output.arrayOffset() + position, output.remaining());
+            output.position(position + progress);
+            return progress;
+        }
+        final int progress = inflater.inflate(scratch, 0, Math.min(scratch.length, output.remaining()));
+        output.put(scratch, 0, progress);
+        return progress;
+    }
+}
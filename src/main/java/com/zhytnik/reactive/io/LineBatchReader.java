@@ -0,0 +1,191 @@
+/*
+ * Copyright 2018 Alexey Zhytnik
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zhytnik.reactive.io;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.Flow.Publisher;
+import java.util.concurrent.Flow.Subscriber;
+import java.util.concurrent.Flow.Subscription;
+
+/**
+ * A line by line file reader which sends lines by batches, one batch per read chunk of the file.
+ * A batch carries a buffer and offsets of its lines, so a subscriber could process
+ * many lines in a tight loop without an invocation of {@link Subscriber#onNext(Object)} per line.
+ * Detects lines in the same way as {@link LineReader} and uses its settings.
+ *
+ * @author Alexey Zhytnik
+ */
+public final class LineBatchReader implements Publisher<LineBatchReader.Batch> {
+
+    private final LineReader reader;
+
+    /**
+     * Constructs a LineBatchReader associated with the file.
+     *
+     * @param path the path to file for reading
+     */
+    public LineBatchReader(Path path) {
+        this(new LineReader(path));
+    }
+
+    /**
+     * Constructs a LineBatchReader which reads lines with the same settings as the LineReader.
+     *
+     * @param reader the reader of lines
+     */
+    public LineBatchReader(LineReader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Reads the file by batches of lines. Before invocation of {@link Subscription#request(long)}
+     * doesn't consume any resources. Reads only requested count of batches,
+     * a value of {@code Long.MAX_VALUE} is request to read all lines.
+     * Completes when the end of the file or requested batch count is reached,
+     * unless the reader awaits requests (see {@link LineReader.Builder#awaitRequests()}).
+     * Never sends empty batches, the same batch instance is sent each time.
+     * Warnings: a batch and bytes of its lines exist only inside invoked body of
+     * {@link Subscriber#onNext(Object)}, do not change bytes of the batch's buffer.
+     *
+     * @param subscriber the subscriber-reader
+     * @see LineReader#subscribe(Subscriber)
+     */
+    @Override
+    public void subscribe(Subscriber<? super Batch> subscriber) {
+        try (final BatchRequest r = new BatchRequest(subscriber, reader.awaits())) {
+            subscriber.onSubscribe(r);
+            reader.parse(r);
+        }
+    }
+
+    /**
+     * Represents lines which are placed in a buffer. Line {@code i} is placed from
+     * {@code starts()[i]} to {@code ends()[i]} (exclusive) absolute indexes of the buffer,
+     * position and limit of the buffer are undefined.
+     *
+     * @author Alexey Zhytnik
+     */
+    public static final class Batch {
+
+        private static final int INITIAL_CAPACITY = 256;
+
+        private int size;
+        private ByteBuffer buffer;
+        private int[] starts = new int[INITIAL_CAPACITY];
+        private int[] ends = new int[INITIAL_CAPACITY];
+
+        private Batch() {
+        }
+
+        /**
+         * @return the buffer with lines
+         */
+        public ByteBuffer buffer() {
+            return buffer;
+        }
+
+        /**
+         * @return the line count of the batch
+         */
+        public int size() {
+            return size;
+        }
+
+        /**
+         * @param line the index of line
+         * @return the index of the first byte of the line
+         */
+        public int start(int line) {
+            return starts[line];
+        }
+
+        /**
+         * @param line the index of line
+         * @return the index after the last byte of the line
+         */
+        public int end(int line) {
+            return ends[line];
+        }
+
+        /**
+         * @return starts of lines, only first {@link #size()} values are valid
+         */
+        public int[] starts() {
+            return starts;
+        }
+
+        /**
+         * @return ends of lines, only first {@link #size()} values are valid
+         */
+        public int[] ends() {
+            return ends;
+        }
+
+        private void add(int start, int end) {
+            if (size == starts.length) {
+                starts = Arrays.copyOf(starts, 2 * size);
+                ends = Arrays.copyOf(ends, 2 * size);
+            }
+            starts[size] = start;
+            ends[size] = end;
+            size++;
+        }
+    }
+
+    private static final class BatchRequest extends LineReader.LineRequest {
+
+        private final Batch batch = new Batch();
+        private final Subscriber<? super Batch> subscriber;
+
+        private BatchRequest(Subscriber<? super Batch> subscriber, boolean awaits) {
+            super("batches", awaits);
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        boolean line(ByteBuffer chunk, int start, int end) {
+            batch.add(start, end);
+            return true;
+        }
+
+        @Override
+        boolean parsed(ByteBuffer chunk) {
+            if (batch.size > 0) {
+                if (!awaitDemand()) return false;
+
+                batch.buffer = chunk;
+                subscriber.onNext(batch);
+                produced(1);
+
+                batch.size = 0;
+                batch.buffer = null;
+            }
+            return proceeds();
+        }
+
+        @Override
+        void fail(Throwable e) {
+            subscriber.onError(e);
+        }
+
+        @Override
+        void complete(long remain) {
+            subscriber.onComplete();
+        }
+    }
+}
@@ -0,0 +1,306 @@
+/*
+ * Copyright 2018 Alexey Zhytnik
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zhytnik.reactive.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.Flow.Publisher;
+import java.util.concurrent.Flow.Subscriber;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+
+/**
+ * A line by line file reader which follows the file like {@code tail -f}:
+ * after reaching the end of the file it waits for appended bytes and sends new lines
+ * as soon as they're terminated. Waits for changes by a {@link WatchService}
+ * of the file's directory, if it isn't available then polls the file.
+ * A partial last line and a CR LF pair are carried across appends.
+ * When the file is truncated or replaced by another file (rotation),
+ * sends the partial last line and continues from the start of the new content,
+ * skipped lines of the reader are skipped only in the content which is opened first.
+ * Follows {@link LineReader} contract, but never completes, reading
+ * is stopped only by cancellation or failure. Memory mapping and gzip files aren't supported.
+ *
+ * @author Alexey Zhytnik
+ */
+public final class LineFollower implements Publisher<ByteBuffer> {
+
+    private final LineReader reader;
+    private final boolean fromEnd;
+    private final long interval;
+
+    /**
+     * Constructs a LineFollower which reads the file from the start and checks it every second.
+     *
+     * @param path the path to file for reading
+     */
+    public LineFollower(Path path) {
+        this(new LineReader(path), false, 1, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Constructs a LineFollower which reads with the same settings as the LineReader.
+     *
+     * @param reader   the reader of the file
+     * @param fromEnd  whether only bytes appended after subscription should be read
+     * @param interval the max time of waiting for changes between checks of the file
+     * @param unit     the unit of the interval
+     */
+    public LineFollower(LineReader reader, boolean fromEnd, long interval, TimeUnit unit) {
+        if (interval <= 0) {
+            throw new IllegalArgumentException("Interval is " + interval + " " + unit + "!");
+        }
+        this.reader = reader;
+        this.fromEnd = fromEnd;
+        this.interval = unit.toNanos(interval);
+    }
+
+    /**
+     * Follows the file in the subscribing thread. When there's no demand, waits for it
+     * without reading. Interruption of the thread fails the subscription.
+     *
+     * @param subscriber the subscriber-reader
+     * @see LineReader#subscribe(Subscriber)
+     */
+    @Override
+    public void subscribe(Subscriber<? super ByteBuffer> subscriber) {
+        try (final LineReader.LineRequest r = LineReader.request(subscriber, true)) {
+            subscriber.onSubscribe(r);
+
+            if (r.isOpen()) {
+                final Tail tail = new Tail(r);
+                try {
+                    tail.follow();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    r.onError(e);
+                } catch (Exception e) {
+                    r.onError(e);
+                } finally {
+                    tail.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Represents reading of the file which is installed by LineParser
+     * as a FileReader subscription. Each content of the file (until truncation
+     * or rotation) is parsed by its own LineParser and memory allocator.
+     *
+     * @author Alexey Zhytnik
+     */
+    private final class Tail implements FileReader.ReadSubscription {
+
+        private Path path;
+        private long from;
+        private boolean mapping;
+        private Supplier<ByteBuffer> allocator;
+
+        private long position;
+        private Object identity;
+
+        private FileChannel channel;
+        private WatchService watcher;
+
+        private volatile boolean cancelled;
+        private final LineReader.LineRequest request;
+
+        private Tail(LineReader.LineRequest request) {
+            this.request = request;
+        }
+
+        private void follow() throws IOException, InterruptedException {
+            boolean first = true;
+
+            while (isOpen()) {
+                final LineReader.MemoryAllocator memory = reader.allocator();
+                final Subscriber<ByteBuffer> parser = reader.parser(request, memory, first ? reader.skip() : 0);
+                try {
+                    parser.onSubscribe(this);
+
+                    if (mapping) {
+                        throw new IllegalStateException("Memory mapping isn't supported by LineFollower!");
+                    }
+                    if (reader.compressed()) {
+                        throw new IllegalStateException("Compressed files aren't supported by LineFollower!");
+                    }
+                    open(first);
+                    follow(parser);
+                } finally {
+                    if (memory != null) memory.release();
+                }
+                first = false;
+            }
+        }
+
+        private void open(boolean first) throws IOException {
+            if (channel != null) channel.close();
+
+            identity = identity(path);
+            channel = FileChannel.open(path, StandardOpenOption.READ);
+            position = !first ? 0 : fromEnd ? channel.size() : from;
+
+            if (first) watch();
+        }
+
+        private void watch() {
+            final Path directory = path.toAbsolutePath().getParent();
+            try {
+                watcher = directory.getFileSystem().newWatchService();
+                directory.register(watcher, ENTRY_CREATE, ENTRY_MODIFY);
+            } catch (IOException | UnsupportedOperationException e) {
+                closeWatcher();
+            }
+        }
+
+        /**
+         * Reads the current content of the file until it's truncated or rotated.
+         * Before each read waits for demand, lines of a read chunk wait for it in the request.
+         */
+        private void follow(Subscriber<ByteBuffer> parser) throws IOException, InterruptedException {
+            while (isOpen() && request.awaitDemand()) {
+                final long size = channel.size();
+
+                if (size > position) {
+                    read(parser);
+                } else if (size < position || isRotated()) {
+                    parser.onComplete();
+                    return;
+                } else {
+                    await();
+                }
+            }
+        }
+
+        private void read(Subscriber<ByteBuffer> parser) throws IOException {
+            final ByteBuffer chunk = allocator.get();
+            final int progress = Math.max(channel.read(chunk, position), 0);
+
+            chunk.limit(chunk.position());
+            chunk.position(chunk.limit() - progress);
+
+            if (progress > 0) {
+                position += progress;
+                parser.onNext(chunk);
+            }
+        }
+
+        private boolean isRotated() throws IOException {
+            try {
+                return !identity.equals(identity(path));
+            } catch (NoSuchFileException e) {
+                return false;
+            }
+        }
+
+        private Object identity(Path file) throws IOException {
+            final BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            final Object key = attributes.fileKey();
+            return (key != null) ? key : attributes.creationTime();
+        }
+
+        private void await() throws InterruptedException {
+            if (watcher == null) {
+                TimeUnit.NANOSECONDS.sleep(interval);
+                return;
+            }
+            final WatchKey key = watcher.poll(interval, TimeUnit.NANOSECONDS);
+            if (key != null) {
+                key.pollEvents();
+                key.reset();
+            }
+        }
+
+        private boolean isOpen() {
+            return !cancelled && request.isOpen();
+        }
+
+        @Override
+        public void setPath(Path path) {
+            this.path = path;
+        }
+
+        @Override
+        public void setAllocator(Supplier<ByteBuffer> allocator) {
+            this.allocator = allocator;
+        }
+
+        @Override
+        public void setMapping(int window) {
+            this.mapping = true;
+        }
+
+        /**
+         * Starts reading from the start of the range, the end of the range is ignored.
+         */
+        @Override
+        public void setRange(long from, long to) {
+            this.from = from;
+        }
+
+        /**
+         * The file is always followed, so reading waits for requests of lines.
+         */
+        @Override
+        public void setAwaiting(boolean awaiting) {
+        }
+
+        /**
+         * Lines are read while the request is open.
+         */
+        @Override
+        public void request(long bytes) {
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+
+        private void close() {
+            closeWatcher();
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    request.onError(e);
+                }
+            }
+        }
+
+        private void closeWatcher() {
+            if (watcher != null) {
+                try {
+                    watcher.close();
+                } catch (IOException ignored) {
+                }
+                watcher = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright 2018 Alexey Zhytnik
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zhytnik.reactive.io;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Optional;
+
+/**
+ * An index of file lines which keeps byte offsets of each step-th line
+ * (line 0, step, 2 * step, ...) in a {@code long[]}, so 8 bytes per step lines.
+ * Allows {@link LineReader} to start from any line by seeking to the nearest indexed
+ * line before it (see {@link LineReader.Builder#fromLine(long, LineIndex)}).
+ * Could be saved into a sidecar file, loaded index is valid only if size
+ * and last modified time of the file weren't changed.
+ *
+ * @author Alexey Zhytnik
+ */
+public final class LineIndex {
+
+    private static final int MAGIC = 0x4C494458;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 40;
+
+    private final long[] offsets;
+    private final int step;
+    private final long lines;
+    private final long size;
+    private final long modified;
+
+    LineIndex(long[] offsets, int step, long lines, long size, long modified) {
+        this.offsets = offsets;
+        this.step = step;
+        this.lines = lines;
+        this.size = size;
+        this.modified = modified;
+    }
+
+    /**
+     * Scans the file and builds its index.
+     *
+     * @param file the path to the file
+     * @param step the count of lines between indexed lines
+     * @return the index of the file
+     * @throws IOException if the file can't be read
+     */
+    public static LineIndex build(Path file, int step) throws IOException {
+        if (step <= 0) {
+            throw new IllegalArgumentException("Step is " + step + " lines!");
+        }
+        return new LineReader(file).index(step);
+    }
+
+    /**
+     * Loads the index of the file from its sidecar file ({@link #sidecar(Path)})
+     * if it's valid and has the same step, otherwise builds the index and saves it.
+     *
+     * @param file the path to the file
+     * @param step the count of lines between indexed lines
+     * @return the index of the file
+     * @throws IOException if the file can't be read or the index can't be saved
+     */
+    public static LineIndex open(Path file, int step) throws IOException {
+        final Path sidecar = sidecar(file);
+        final Optional<LineIndex> loaded = load(file, sidecar);
+
+        if (loaded.isPresent() && loaded.get().step == step) {
+            return loaded.get();
+        }
+        final LineIndex index = build(file, step);
+        index.save(sidecar);
+        return index;
+    }
+
+    /**
+     * Returns the default path of the file's index: the file's name with ".lines" suffix.
+     *
+     * @param file the path to the file
+     * @return the path to the sidecar file
+     */
+    public static Path sidecar(Path file) {
+        return file.resolveSibling(file.getFileName() + ".lines");
+    }
+
+    /**
+     * Loads the index of the file.
+     *
+     * @param file    the path to the file
+     * @param sidecar the path to the saved index
+     * @return the index or nothing if it's missing, broken or built for other content of the file
+     * @throws IOException if the file or the index can't be read
+     */
+    public static Optional<LineIndex> load(Path file, Path sidecar) throws IOException {
+        final long size = Files.size(file);
+        final long modified = Files.getLastModifiedTime(file).toMillis();
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(sidecar)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) return Optional.empty();
+
+            if (in.readLong() != size || in.readLong() != modified) return Optional.empty();
+
+            final int step = in.readInt();
+            final long lines = in.readLong();
+            final int count = in.readInt();
+
+            if (step <= 0 || lines < 0 || lines > size + 1 || count < 0 || count > size + 1
+                    || count > (Files.size(sidecar) - HEADER_SIZE) / Long.BYTES) {
+                return Optional.empty();
+            }
+            final long[] offsets = new long[count];
+
+            for (int i = 0; i < offsets.length; i++) {
+                offsets[i] = in.readLong();
+
+                if (offsets[i] < 0 || offsets[i] > size || i > 0 && offsets[i] <= offsets[i - 1]) {
+                    return Optional.empty();
+                }
+            }
+            return Optional.of(new LineIndex(offsets, step, lines, size, modified));
+        } catch (NoSuchFileException | EOFException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Saves the index, the sidecar file is replaced atomically if it's supported.
+     *
+     * @param sidecar the path to the saved index
+     * @throws IOException if the index can't be written
+     */
+    public void save(Path sidecar) throws IOException {
+        final Path temporal = sidecar.resolveSibling(sidecar.getFileName() + ".tmp");
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporal)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(size);
+            out.writeLong(modified);
+            out.writeInt(step);
+            out.writeLong(lines);
+            out.writeInt(offsets.length);
+
+            for (long offset : offsets) {
+                out.writeLong(offset);
+            }
+        }
+        try {
+            Files.move(temporal, sidecar, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Files.move(temporal, sidecar, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Returns the number of the indexed line which is the nearest one before the line.
+     */
+    int floor(long line) {
+        return (int) Math.min(line / step, offsets.length - 1);
+    }
+
+    /**
+     * Returns the offset of the indexed line.
+     */
+    long offset(int indexed) {
+        return offsets[indexed];
+    }
+
+    /**
+     * @return the count of lines between indexed lines
+     */
+    public int step() {
+        return step;
+    }
+
+    /**
+     * @return the count of the file's lines
+     */
+    public long lines() {
+        return lines;
+    }
+}
@@ -15,21 +15,33 @@
  */
 package com.zhytnik.reactive.io;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
 import java.util.concurrent.Flow.Publisher;
 import java.util.concurrent.Flow.Subscriber;
 import java.util.concurrent.Flow.Subscription;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Supplier;
 import java.util.logging.Logger;
 
 /**
  * A line by line file reader which reads requested lines by {@link ByteBuffer}.
- * Lazily reads lines and almost always uses only 32KB of memory.
- * Uses additional memory only for lines that are greater than 32768 characters (logs these allocations).
+ * Lazily reads lines and by default almost always uses only 32KB of memory.
+ * Uses additional memory only for lines that are greater than 32768 characters (logs these allocations),
+ * sizes of reads and memory are configurable, long lines could be read by fragments (see {@link Builder}).
  * Detects lines that terminated by any one of a line feed ('\n'), a carriage return ('\r'),
  * a carriage return followed immediately by a line feed, or by reaching the end-of-file.
+ * Lines could be placed in heap or direct memory, or in a memory mapped file (see {@link Builder}).
+ * Gzip files could be read without decompression to disk (see {@link Builder#gzip()}),
+ * records which are separated by a custom delimiter could be read instead of lines
+ * (see {@link Builder#delimiter(byte...)}).
  * Supported charsets:
  * {@link StandardCharsets#UTF_8 UTF-8},
  * {@link StandardCharsets#US_ASCII US-ASCII},
@@ -40,6 +52,22 @@ import java.util.logging.Logger;
 public final class LineReader implements Publisher<ByteBuffer> {
 
     private final Path path;
+    private final int mapping;
+    private final boolean direct;
+    private final boolean gzip;
+    private final byte[] delimiter;
+
+    private final int pageSize;
+    private final int generalSize;
+    private final boolean adaptive;
+    private final boolean fragments;
+    private final boolean awaits;
+    private final BufferPool pool;
+
+    private final long from;
+    private final long to;
+    private final long skip;
+    private final long end;
 
     /**
      * Constructs a LineReader associated with the file.
@@ -47,13 +75,61 @@ public final class LineReader implements Publisher<ByteBuffer> {
      * @param path the path to file for reading
      */
     public LineReader(Path path) {
-        this.path = path;
+        this(new Builder(path));
+    }
+
+    private LineReader(Builder builder) {
+        this.path = builder.path;
+        this.direct = builder.direct;
+        this.mapping = builder.mapping;
+        this.gzip = builder.gzip;
+        this.delimiter = builder.delimiter;
+        this.pageSize = builder.pageSize;
+        this.generalSize = builder.generalSize;
+        this.adaptive = builder.adaptive;
+        this.pool = builder.pool;
+        this.fragments = builder.fragments;
+        this.awaits = builder.awaits;
+        this.from = builder.from;
+        this.to = Long.MAX_VALUE;
+        this.skip = builder.skip;
+        this.end = builder.end;
+    }
+
+    private LineReader(LineReader reader, long from, long to) {
+        this.path = reader.path;
+        this.direct = reader.direct;
+        this.mapping = reader.mapping;
+        this.gzip = reader.gzip;
+        this.delimiter = reader.delimiter;
+        this.pageSize = reader.pageSize;
+        this.generalSize = reader.generalSize;
+        this.adaptive = reader.adaptive;
+        this.pool = reader.pool;
+        this.fragments = reader.fragments;
+        this.awaits = reader.awaits;
+        this.from = from;
+        this.to = to;
+        this.skip = 0;
+        this.end = reader.end;
+    }
+
+    /**
+     * Creates a builder of a LineReader associated with the file.
+     *
+     * @param path the path to file for reading
+     * @return the builder with default settings
+     */
+    public static Builder builder(Path path) {
+        return new Builder(path);
     }
 
     /**
      * Reads the file by lines. Before invocation of {@link Subscription#request(long)}
      * doesn't consume any resources. Reads only requested count of lines,
      * a value of {@code Long.MAX_VALUE} is request to read all lines.
+     * Requests and cancellation could be signaled from any thread,
+     * see {@link Builder#awaitRequests()} for requests after sent lines.
      * If at the end of the file requested line count isn't reached then
      * {@link NoSuchLineCountException} will be thrown, also throws
      * {@link IllegalArgumentException} on negative values of requests.
@@ -61,50 +137,512 @@ public final class LineReader implements Publisher<ByteBuffer> {
      * position to limit (exclusive), in case of an empty file this method is never invoked.
      * Warnings: bytes of each line exist only inside invoked body of
      * {@link Subscriber#onNext(Object)}, do not change bytes after limit position (inclusive).
+     * The subscription is a {@link LineSubscription}, in fragment mode it tells
+     * whether the passed bytes are a fragment of a line which continues in next invocation.
      *
      * @param subscriber the subscriber-reader
      * @see FileReader
      */
     @Override
     public void subscribe(Subscriber<? super ByteBuffer> subscriber) {
-        try (final ParseRequest r = new ParseRequest(path, subscriber)) {
+        try (final ParseRequest r = new ParseRequest(subscriber, awaits)) {
             subscriber.onSubscribe(r);
+            parse(r);
+        }
+    }
+
+    /**
+     * Counts lines of the file.
+     *
+     * @return the line count
+     * @throws UncheckedIOException if the file can't be read
+     * @see #statistics()
+     */
+    public long count() {
+        return statistics().lines();
+    }
+
+    /**
+     * Collects statistics of the file's lines by one scan without any per-line invocations.
+     * Bytes of lines aren't kept, so long lines never need additional memory.
+     *
+     * @return the statistics of lines
+     * @throws UncheckedIOException if the file can't be read
+     * @throws IllegalStateException if the file is read by a custom delimiter
+     */
+    public LineStatistics statistics() {
+        checkTerminators();
+
+        final MemoryAllocator allocator = allocator();
+        final LineScanner scanner = new LineScanner(this, allocator, 0);
+        try {
+            files().subscribe(scanner);
+        } finally {
+            if (allocator != null) allocator.release();
+        }
+        return scanner.result();
+    }
 
-            if (r.isActive()) {
-                final FileReader reader = new FileReader();
-                final LineParser parser = new LineParser(r);
-                reader.subscribe(parser);
+    /**
+     * Parses the file into lines of the request if it's active.
+     */
+    void parse(LineRequest request) {
+        if (request.awaitDemand()) {
+            final MemoryAllocator allocator = allocator();
+            try {
+                files().subscribe(new LineParser(this, allocator, request, skip));
+            } finally {
+                if (allocator != null) allocator.release();
             }
         }
     }
 
+    /**
+     * Creates a request which sends lines to the subscriber like {@link #subscribe(Subscriber)}.
+     *
+     * @param awaits whether the request waits for next requests when requested lines are sent
+     * @see ReverseLineReader
+     * @see LineFollower
+     */
+    static LineRequest request(Subscriber<? super ByteBuffer> subscriber, boolean awaits) {
+        return new ParseRequest(subscriber, awaits);
+    }
+
+    /**
+     * Tells whether requests of the reader wait for next requests.
+     *
+     * @see Builder#awaitRequests()
+     */
+    boolean awaits() {
+        return awaits;
+    }
+
+    /**
+     * Creates a FileReader subscriber which parses lines into the request
+     * after skipping the count of lines.
+     */
+    Subscriber<ByteBuffer> parser(LineRequest request, MemoryAllocator allocator, long skip) {
+        return new LineParser(this, allocator, request, skip);
+    }
+
+    /**
+     * Creates a reader of the file's content which is parsed into lines.
+     */
+    Publisher<ByteBuffer> files() {
+        return gzip ? new GzipFileReader() : new FileReader();
+    }
+
+    MemoryAllocator allocator() {
+        return (mapping > 0) ? null : new MemoryAllocator(direct, pageSize, generalSize, adaptive, pool);
+    }
+
+    /**
+     * Creates a LineReader with the same settings which reads only lines
+     * of the byte range. The range should start and end at line starts,
+     * no lines are skipped, so skipped lines should be resolved into the start.
+     *
+     * @see ParallelLineReader
+     */
+    LineReader range(long from, long to) {
+        return new LineReader(this, from, to);
+    }
+
+    /**
+     * Scans the file and records offsets of each step-th line.
+     *
+     * @see LineIndex#build(Path, int)
+     */
+    LineIndex index(int step) throws IOException {
+        checkTerminators();
+
+        final FileTime modified = Files.getLastModifiedTime(path);
+        final LineScanner scanner = new LineScanner(this, allocator(), step);
+        try {
+            files().subscribe(scanner);
+        } finally {
+            if (scanner.allocator != null) scanner.allocator.release();
+        }
+        try {
+            scanner.result();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return scanner.index(Files.size(path), modified.toMillis());
+    }
+
+    private void checkTerminators() {
+        if (delimiter != null) {
+            throw new IllegalStateException("Scanning of records by a custom delimiter isn't supported!");
+        }
+    }
+
+    Path path() {
+        return path;
+    }
+
+    long start() {
+        return from;
+    }
+
+    long end() {
+        return end;
+    }
+
+    long skip() {
+        return skip;
+    }
+
+    boolean compressed() {
+        return gzip;
+    }
+
+    boolean delimited() {
+        return delimiter != null;
+    }
+
+    /**
+     * Configures reading of the file's content for a parser.
+     *
+     * @see CsvReader
+     */
+    void configure(FileReader.ReadSubscription s, MemoryAllocator allocator) {
+        s.setPath(path);
+        s.setRange(from, to);
+
+        if (mapping > 0) {
+            s.setMapping(mapping);
+        } else {
+            s.setAllocator(allocator);
+        }
+    }
+
+    /**
+     * A builder of LineReader. By default lines are placed in heap memory,
+     * the file is read by 4096-byte pages into 32KB of general memory.
+     *
+     * @author Alexey Zhytnik
+     */
+    public static final class Builder {
+
+        private int mapping;
+        private boolean direct;
+        private boolean gzip;
+        private byte[] delimiter;
+
+        private boolean adaptive;
+        private boolean fragments;
+        private boolean awaits;
+        private BufferPool pool;
+
+        private long from;
+        private long skip;
+        private long rangeStart;
+        private long end = Long.MAX_VALUE;
+        private int pageSize = MemoryAllocator.PAGE_SIZE;
+        private int generalSize = MemoryAllocator.GENERAL_MEMORY_SIZE;
+
+        private final Path path;
+
+        private Builder(Path path) {
+            this.path = path;
+        }
+
+        /**
+         * Reads the file into direct memory, so lines have no accessible array
+         * and could be passed to native or NIO sinks without copying.
+         *
+         * @return this builder
+         */
+        public Builder directMemory() {
+            this.direct = true;
+            return this;
+        }
+
+        /**
+         * Reads the file by memory mapped windows instead of reading it into allocated memory,
+         * lines are placed in read-only direct buffers. Lines that are longer than the window
+         * increase it. Overrides {@link #directMemory()}.
+         *
+         * @param window the size of mapped windows in bytes
+         * @return this builder
+         * @see FileReader.ReadSubscription#setMapping(int)
+         */
+        public Builder mapping(int window) {
+            if (window <= 0) {
+                throw new IllegalArgumentException("Mapping window is " + window + " bytes!");
+            }
+            this.mapping = window;
+            return this;
+        }
+
+        /**
+         * Reads the file as gzip file, lines of its decompressed content are placed in
+         * allocated memory, so there's no decompression to disk. Byte ranges are ranges
+         * of decompressed content, bytes before a range are decompressed and skipped.
+         * Can't be combined with {@link #mapping(int)}.
+         *
+         * @return this builder
+         * @see GzipFileReader
+         */
+        public Builder gzip() {
+            this.gzip = true;
+            return this;
+        }
+
+        /**
+         * Reads records which are separated by the delimiter instead of lines, for example
+         * NUL-separated records ({@code 0x00}), ASCII record separators ({@code 0x1E})
+         * or multi-byte boundaries like {@code "\n---\n"}. Records don't contain delimiters,
+         * a delimiter is detected even if it's divided between file reads, the last record
+         * is terminated by the delimiter or by the end-of-file. Delimiters don't overlap,
+         * they're found from the start of the file. Records are numbered like lines by
+         * {@link #fromLine(long)}, statistics and indexes of records aren't supported.
+         *
+         * @param delimiter the bytes of the delimiter
+         * @return this builder
+         */
+        public Builder delimiter(byte... delimiter) {
+            if (delimiter.length == 0) {
+                throw new IllegalArgumentException("Delimiter is empty!");
+            }
+            this.delimiter = delimiter.clone();
+            return this;
+        }
+
+        /**
+         * Sets the byte count of each file read, bigger pages need fewer read system calls.
+         *
+         * @param size the page size in bytes
+         * @return this builder
+         */
+        public Builder pageSize(int size) {
+            if (size <= 0) {
+                throw new IllegalArgumentException("Page size is " + size + " bytes!");
+            }
+            this.pageSize = size;
+            return this;
+        }
+
+        /**
+         * Sets the size of general memory, lines which don't fit it
+         * with a page are placed in additional memory.
+         *
+         * @param size the general memory size in bytes, at least two pages
+         * @return this builder
+         */
+        public Builder generalMemorySize(int size) {
+            if (size <= 0) {
+                throw new IllegalArgumentException("General memory size is " + size + " bytes!");
+            }
+            this.generalSize = size;
+            return this;
+        }
+
+        /**
+         * Adapts memory to the file: doubles pages (up to 256KB or the page size)
+         * while reads fill them entirely, general memory is kept at least
+         * eight pages and grows to hold lines which don't fit it.
+         *
+         * @return this builder
+         */
+        public Builder adaptive() {
+            this.adaptive = true;
+            return this;
+        }
+
+        /**
+         * Takes memory from the pool and returns it back when reading ends,
+         * so subscriptions in any threads could reuse the same memory.
+         * Doesn't affect reading by {@link #mapping(int)}.
+         *
+         * @param pool the shared buffer pool
+         * @return this builder
+         */
+        public Builder pool(BufferPool pool) {
+            this.pool = pool;
+            return this;
+        }
+
+        /**
+         * Sends lines which don't fit general memory (or twice the mapping window)
+         * by fragments instead of allocating additional memory, so memory
+         * consumption is bounded for any line length. Each fragment except
+         * the last one is marked by {@link LineSubscription#continues()},
+         * requested line count is decreased only by the last fragment.
+         * Isn't supported by {@link LineBatchReader}.
+         *
+         * @return this builder
+         */
+        public Builder fragments() {
+            this.fragments = true;
+            return this;
+        }
+
+        /**
+         * By default reading completes when requested lines are sent. With this setting
+         * the subscribing thread waits for next requests instead, so lines could be requested
+         * from other threads after {@link Subscriber#onNext(Object)} returned.
+         * Then reading before the end of the file is finished only by cancellation
+         * or by interruption of the thread, which fails the subscription.
+         * Readers which are based on the LineReader follow this setting.
+         *
+         * @return this builder
+         */
+        public Builder awaitRequests() {
+            this.awaits = true;
+            return this;
+        }
+
+        /**
+         * Starts reading from the line, previous lines are parsed and skipped.
+         *
+         * @param line the number of the first line for reading, starting from 0
+         * @return this builder
+         */
+        public Builder fromLine(long line) {
+            return fromLine(line, null);
+        }
+
+        /**
+         * Starts reading from the line, seeks to the nearest indexed line before it,
+         * so only lines between them are parsed and skipped.
+         * The index should be built for the current content of the file.
+         *
+         * @param line  the number of the first line for reading, starting from 0
+         * @param index the index of the file, could be {@code null}
+         * @return this builder
+         * @see LineIndex#open(Path, int)
+         * @see #range(long, long)
+         */
+        public Builder fromLine(long line, LineIndex index) {
+            if (line < 0) {
+                throw new IllegalArgumentException("Line number is " + line + "!");
+            }
+            final int indexed = (index == null) ? 0 : index.floor(line);
+
+            this.from = (index == null) ? 0 : index.offset(indexed);
+            this.skip = line - (index == null ? 0 : (long) indexed * index.step());
+            this.rangeStart = 0;
+            return this;
+        }
+
+        /**
+         * Reads only lines which start in the byte range: a line which starts before the range
+         * is skipped, the last line which starts in the range is read to its end even if it
+         * crosses the end of the range. So adjacent ranges (e.g. shards of the file
+         * which are read by different processes) read each line exactly once.
+         * Replaces the start which is set by {@link #fromLine(long, LineIndex)}.
+         *
+         * @param from the position of the first byte of the range
+         * @param to   the position after the last byte of the range
+         * @return this builder
+         */
+        public Builder range(long from, long to) {
+            if (from < 0 || to < from) {
+                throw new IllegalArgumentException("Range [" + from + ", " + to + ") is wrong!");
+            }
+            this.from = Math.max(from - 1, 0);
+            this.skip = (from > 0) ? 1 : 0;
+            this.rangeStart = from;
+            this.end = to;
+            return this;
+        }
+
+        /**
+         * Creates a LineReader with specified settings.
+         * Throws {@link IllegalArgumentException} if general memory is less than two pages
+         * or a gzip file should be memory mapped.
+         *
+         * @return the LineReader
+         */
+        public LineReader build() {
+            if (generalSize / 2 < pageSize) {
+                throw new IllegalArgumentException("General memory of " + generalSize
+                        + " bytes is less than two pages of " + pageSize + " bytes!");
+            }
+            if (gzip && mapping > 0) {
+                throw new IllegalArgumentException("Memory mapping of compressed files isn't supported!");
+            }
+            if (delimiter != null && rangeStart > 0) {
+                from = Math.max(rangeStart - delimiter.length, 0);
+            }
+            return new LineReader(this);
+        }
+    }
+
+    /**
+     * Represents a subscription to lines which could be sent by fragments.
+     *
+     * @author Alexey Zhytnik
+     * @see Builder#fragments()
+     */
+    public interface LineSubscription extends Subscription {
+
+        /**
+         * Tells whether bytes of the current {@link Subscriber#onNext(Object)} invocation
+         * are a fragment of a line which continues in next invocation.
+         * Should be invoked only inside {@link Subscriber#onNext(Object)}.
+         *
+         * @return {@code true} if the line isn't finished
+         */
+        boolean continues();
+    }
+
     /**
      * Thrown to indicate that end-of-file was reached without all requested lines.
      *
      * @author Alexey Zhytnik
      */
     public static final class NoSuchLineCountException extends RuntimeException {
-        private NoSuchLineCountException(long remain) {
+
+        private final long remain;
+
+        NoSuchLineCountException(long remain) {
             super("There's no more line for reading, remaining line count is " + remain + "!");
+            this.remain = remain;
+        }
+
+        /**
+         * @return the count of requested lines which weren't read
+         */
+        public long remain() {
+            return remain;
         }
     }
 
     /**
      * Represents a FileReader subscriber which parses lines and
-     * sends them to a LineReader's subscriber.
+     * sends them to a {@link LineRequest}.
      *
      * @author Alexey Zhytnik
      */
     private static final class LineParser implements Subscriber<ByteBuffer> {
 
+        private long skip;
+        private int scanned;
         private boolean ignoreLF;
         private Runnable interrupter;
         private ByteBuffer lastChunk;
 
-        private final ParseRequest request;
+        private long base;
+        private long readEnd;
+        private long lastStart;
+        private boolean finished;
+
+        private final int kept;
+        private final byte[] delimiter;
+        private final LineReader reader;
+        private final LineRequest request;
+        private final MemoryAllocator allocator;
 
-        private LineParser(ParseRequest request) {
+        private LineParser(LineReader reader, MemoryAllocator allocator, LineRequest request, long skip) {
+            this.reader = reader;
             this.request = request;
+            this.allocator = allocator;
+            this.skip = skip;
+            this.readEnd = reader.from;
+            this.delimiter = reader.delimiter;
+            this.kept = (delimiter == null) ? 1 : delimiter.length;
         }
 
         /**
@@ -112,16 +650,16 @@ public final class LineReader implements Publisher<ByteBuffer> {
          */
         @Override
         public void onSubscribe(Subscription s) {
-            ((FileReader.ReadSubscription) s).setPath(request.path);
-            ((FileReader.ReadSubscription) s).setAllocator(new MemoryAllocator());
+            reader.configure((FileReader.ReadSubscription) s, allocator);
             s.request(Long.MAX_VALUE);
             interrupter = s::cancel;
         }
 
         /**
-         * Parses a file content into lines and sends
-         * them to the {@link ParseRequest#subscriber}.
-         * Between invocations saves start of last line at mark position.
+         * Parses a file content into lines and sends them to the {@link LineRequest}.
+         * Between invocations saves start of last line at mark position and
+         * count of bytes after it which were searched for line terminators,
+         * so parsing stopped by the request is resumed by next invocation.
          * Subscription cancellation stops file reading and
          * produces releasing of used resources.
          *
@@ -130,64 +668,128 @@ public final class LineReader implements Publisher<ByteBuffer> {
         @Override
         public void onNext(ByteBuffer chunk) {
             int readLimit = chunk.limit();
+
+            readEnd += readLimit - chunk.position();
+            base = readEnd - readLimit;
+
             int nextStart = parse(chunk, readLimit);
 
-            if (request.isActive()) {
+            chunk.limit(readLimit);
+            final int fragment = readLimit - kept - nextStart;
+
+            if (reader.fragments && skip == 0 && fragment >= Math.max(fragmentSize(), kept) && request.awaitDemand()
+                    && request.fragment(chunk, nextStart, readLimit - kept)) {
                 chunk.limit(readLimit);
+                nextStart = readLimit - kept;
+                scanned = 1;
+            }
+            final boolean proceeds = request.parsed(chunk);
+
+            if (proceeds && !finished) {
                 lastChunk = chunk.position(nextStart).mark();
+                lastStart = base + nextStart;
             } else {
                 interrupter.run();
             }
         }
 
+        /**
+         * Returns the max count of kept bytes of an unfinished line, the last byte
+         * (or bytes of a possibly divided delimiter and the byte before them)
+         * is always kept, so the line ends with a non-empty fragment.
+         * A fragment is never shorter than the kept bytes, even if memory is smaller.
+         */
+        private int fragmentSize() {
+            return (allocator != null) ? allocator.fragmentSize() : reader.mapping;
+        }
+
         private int parse(ByteBuffer chunk, int limit) {
-            int readStart = chunk.position();
+            if (delimiter != null) return parseRecords(chunk, limit);
+
             int lineStart = chunk.reset().position();
-            byte[] memory = chunk.array();
+            int readStart = lineStart + scanned;
             boolean skipLF = ignoreLF;
 
-            for (int i = readStart; i < limit; i++) {
-                final byte c = memory[i];
-
-                if (c == '\r' || c == '\n') {
+            int i = LineTerminators.indexOf(chunk, readStart, limit);
 
-                    if (c == '\r') {
-                        skipLF = true;
-                    } else if (skipLF) {
-                        skipLF = false;
-                        if (lineStart == i) {
-                            lineStart = i + 1;
-                            continue;
-                        }
+            for (; i < limit; i = LineTerminators.indexOf(chunk, i + 1, limit)) {
+                if (chunk.get(i) == '\r') {
+                    skipLF = true;
+                } else if (skipLF) {
+                    skipLF = false;
+                    if (lineStart == i) {
+                        lineStart = i + 1;
+                        continue;
                     }
+                }
 
-                    chunk.limit(i).position(lineStart);
-                    request.send(chunk);
-
+                if (base + lineStart >= reader.end) {
+                    finished = true;
+                    break;
+                }
+                if (skip > 0) {
+                    skip--;
                     lineStart = i + 1;
-
-                    if (!request.isActive()) break;
+                    continue;
                 }
+                final boolean active = request.line(chunk, lineStart, i);
+                chunk.limit(limit);
+
+                lineStart = i + 1;
+
+                if (!active) break;
             }
             ignoreLF = skipLF;
+            scanned = (i < limit) ? 0 : limit - lineStart;
             return lineStart;
         }
 
+        /**
+         * Parses records like {@link #parse(ByteBuffer, int)} parses lines, but the last
+         * {@code delimiter.length - 1} bytes aren't counted as scanned, because they could be
+         * the start of a delimiter which continues in the next chunk.
+         */
+        private int parseRecords(ByteBuffer chunk, int limit) {
+            int recordStart = chunk.reset().position();
+
+            int i = Delimiters.indexOf(chunk, delimiter, recordStart + scanned, limit);
+
+            for (; i < limit; i = Delimiters.indexOf(chunk, delimiter, recordStart, limit)) {
+                if (base + recordStart >= reader.end) {
+                    finished = true;
+                    break;
+                }
+                if (skip > 0) {
+                    skip--;
+                    recordStart = i + delimiter.length;
+                    continue;
+                }
+                final boolean active = request.line(chunk, recordStart, i);
+                chunk.limit(limit);
+
+                recordStart = i + delimiter.length;
+
+                if (!active) break;
+            }
+            scanned = (i < limit) ? 0 : Math.max(limit - recordStart - delimiter.length + 1, 0);
+            return recordStart;
+        }
+
         /**
          * Invoked when end of the file is reached.
          * If previously loaded bytes weren't fully sent,
-         * sends them to the {@link ParseRequest#subscriber}
+         * sends them to the {@link LineRequest}.
          */
         @Override
         public void onComplete() {
-            if (lastChunk != null && lastChunk.reset().hasRemaining()) {
-                request.send(lastChunk);
+            if (lastChunk != null && lastChunk.reset().hasRemaining() && skip == 0 && lastStart < reader.end) {
+                request.line(lastChunk, lastChunk.position(), lastChunk.limit());
+                request.parsed(lastChunk);
             }
         }
 
         /**
-         * Redirects FileReader's exceptions and errors
-         * to the {@link ParseRequest#subscriber}.
+         * Redirects FileReader's exceptions and errors to the {@link LineRequest}.
          */
         @Override
         public void onError(Throwable e) {
@@ -195,56 +797,292 @@ public final class LineReader implements Publisher<ByteBuffer> {
         }
     }
 
-    private static final class ParseRequest implements Subscription, AutoCloseable {
+    /**
+     * Represents a FileReader subscriber which collects {@link LineStatistics}.
+     * Tracks only length of the current line between chunks and
+     * always marks the end of a chunk, so no bytes are kept.
+     *
+     * @author Alexey Zhytnik
+     */
+    private static final class LineScanner implements Subscriber<ByteBuffer> {
 
-        private long remain;
-        private boolean unbounded;
-        private boolean interrupted;
+        private long lines;
+        private long nonEmptyLines;
+        private long maxLength;
 
-        private final Path path;
-        private final Subscriber<? super ByteBuffer> subscriber;
+        private long length;
+        private boolean ignoreLF;
+        private Throwable error;
 
-        private ParseRequest(Path path, Subscriber<? super ByteBuffer> subscriber) {
-            this.path = path;
-            this.subscriber = subscriber;
+        private long skip;
+        private long position;
+        private long lineStart;
+        private Subscription subscription;
+
+        private int indexed;
+        private long[] offsets;
+
+        private final int step;
+        private final LineReader reader;
+        private final MemoryAllocator allocator;
+
+        private LineScanner(LineReader reader, MemoryAllocator allocator, int step) {
+            this.step = step;
+            this.reader = reader;
+            this.allocator = allocator;
+            this.skip = reader.skip;
+            this.position = reader.from;
+            this.lineStart = reader.from;
+
+            if (step > 0) {
+                offsets = new long[16];
+                offsets[indexed++] = reader.from;
+            }
         }
 
-        private boolean isActive() {
-            return !interrupted && (unbounded || remain > 0);
+        @Override
+        public void onSubscribe(Subscription s) {
+            reader.configure((FileReader.ReadSubscription) s, allocator);
+            s.request(Long.MAX_VALUE);
+            subscription = s;
         }
 
         @Override
-        public void request(long lines) {
-            if (lines == Long.MAX_VALUE) {
-                remain = 0;
-                unbounded = true;
-            } else if (lines >= 0) {
-                remain += lines;
-            } else {
-                onError(new IllegalArgumentException("Requested " + lines + " lines!"));
+        public void onNext(ByteBuffer chunk) {
+            final int limit = chunk.limit();
+            final long base = position - chunk.position();
+
+            position = base + limit;
+
+            int start = chunk.position();
+            for (int i = LineTerminators.indexOf(chunk, start, limit); i < limit;
+                 i = LineTerminators.indexOf(chunk, start, limit)) {
+
+                length += i - start;
+                start = i + 1;
+
+                final boolean lf = chunk.get(i) == '\n';
+                if (lf && ignoreLF && length == 0) {
+                    ignoreLF = false;
+                    if (step > 0 && offsets[indexed - 1] == lineStart) offsets[indexed - 1]++;
+                    lineStart++;
+                    continue;
+                }
+                if (lineStart >= reader.end) {
+                    subscription.cancel();
+                    return;
+                }
+                ignoreLF = !lf;
+                count();
+
+                lineStart = base + start;
+                if (step > 0 && lines % step == 0) record(lineStart);
             }
+            length += limit - start;
+            chunk.position(limit).mark();
         }
 
-        private void send(ByteBuffer chunk) {
-            subscriber.onNext(chunk);
-            if (!unbounded) remain--;
+        private void record(long offset) {
+            if (indexed == offsets.length) {
+                offsets = Arrays.copyOf(offsets, 2 * indexed);
+            }
+            offsets[indexed++] = offset;
+        }
+
+        private void count() {
+            if (skip > 0) {
+                skip--;
+                length = 0;
+                return;
+            }
+            lines++;
+            if (length > 0) nonEmptyLines++;
+            if (length > maxLength) maxLength = length;
+            length = 0;
+        }
+
+        @Override
+        public void onComplete() {
+            if (length > 0 && lineStart < reader.end) count();
+        }
+
+        @Override
+        public void onError(Throwable e) {
+            error = e;
+        }
+
+        private LineStatistics result() {
+            if (error instanceof IOException) {
+                throw new UncheckedIOException((IOException) error);
+            } else if (error instanceof RuntimeException) {
+                throw (RuntimeException) error;
+            } else if (error instanceof Error) {
+                throw (Error) error;
+            }
+            return new LineStatistics(lines, nonEmptyLines, maxLength);
+        }
+
+        private LineIndex index(long size, long modified) {
+            final int count = (offsets[indexed - 1] < position || indexed == 1) ? indexed : indexed - 1;
+            return new LineIndex(Arrays.copyOf(offsets, count), step, lines, size, modified);
+        }
+    }
+
+    /**
+     * Represents a subscription to parsed lines. Demand and cancellation
+     * are signaled from any thread without locks, parsing and all signals
+     * to the subscriber happen in the subscribing thread, which could wait
+     * for demand before each line (see {@link #awaitDemand()}).
+     * Errors of requests are kept until the end of parsing.
+     *
+     * @author Alexey Zhytnik
+     */
+    abstract static class LineRequest implements Subscription, AutoCloseable {
+
+        private volatile boolean cancelled;
+        private final AtomicLong requested = new AtomicLong();
+        private final AtomicReference<Throwable> error = new AtomicReference<>();
+        private final AtomicReference<Thread> waiter = new AtomicReference<>();
+
+        private final String unit;
+        private final boolean awaits;
+
+        LineRequest(String unit) {
+            this(unit, false);
+        }
+
+        LineRequest(String unit, boolean awaits) {
+            this.unit = unit;
+            this.awaits = awaits;
+        }
+
+        final boolean isActive() {
+            return isOpen() && requested.get() > 0;
+        }
+
+        /**
+         * Waits until there's demand if the request awaits requests, so lines could be requested
+         * from other threads after {@link Subscriber#onNext(Object)} returned.
+         * Interruption of the thread fails the request.
+         *
+         * @return {@code true} if there's demand
+         */
+        final boolean awaitDemand() {
+            if (isActive() || !awaits) return isActive();
+            try {
+                Demand.await(waiter, () -> isOpen() && requested.get() == 0);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                onError(e);
+            }
+            return isActive();
+        }
+
+        /**
+         * Tells whether the request isn't cancelled and failed, but it could have no demand.
+         */
+        final boolean isOpen() {
+            return !cancelled && error.get() == null;
+        }
+
+        /**
+         * Tells whether parsing should go on: while there's demand,
+         * or while the request is open if it awaits requests.
+         */
+        final boolean proceeds() {
+            return awaits ? isOpen() : isActive();
+        }
+
+        final void produced(long items) {
+            Demand.produced(requested, items);
+        }
+
+        /**
+         * Returns the remaining demand, {@code Long.MAX_VALUE} is unbounded demand.
+         */
+        final long demand() {
+            return requested.get();
+        }
+
+        /**
+         * Receives a line which is placed in the chunk from start to end (exclusive),
+         * a line is sent only after {@link #awaitDemand()}.
+         *
+         * @return {@code false} to stop parsing
+         */
+        abstract boolean line(ByteBuffer chunk, int start, int end);
+
+        /**
+         * Receives a fragment of an unfinished line which is placed
+         * in the chunk from start to end (exclusive).
+         *
+         * @return {@code false} if fragments aren't supported, then the line is kept whole
+         */
+        boolean fragment(ByteBuffer chunk, int start, int end) {
+            return false;
+        }
+
+        /**
+         * Invoked after all lines of the chunk were received.
+         *
+         * @return {@code false} to stop reading
+         */
+        boolean parsed(ByteBuffer chunk) {
+            return proceeds();
+        }
+
+        @Override
+        public void request(long n) {
+            if (n >= 0) {
+                Demand.add(requested, n);
+                Demand.signal(waiter);
+            } else {
+                onError(new IllegalArgumentException("Requested " + n + " " + unit + "!"));
+            }
         }
 
-        private void onError(Throwable error) {
-            interrupted = true;
-            subscriber.onError(error);
+        void onError(Throwable e) {
+            error.compareAndSet(null, e);
+            Demand.signal(waiter);
         }
 
         @Override
         public void cancel() {
-            interrupted = true;
+            cancelled = true;
+            Demand.signal(waiter);
         }
 
+        /**
+         * Sends the terminal signal if the subscription isn't cancelled.
+         */
         @Override
-        public void close() {
-            if (interrupted) return;
+        public final void close() {
+            if (cancelled) return;
 
-            if (unbounded || remain == 0) {
+            final Throwable e = error.get();
+            if (e != null) {
+                fail(e);
+            } else {
+                complete(requested.get());
+            }
+        }
+
+        /**
+         * Sends the error to the subscriber.
+         */
+        abstract void fail(Throwable e);
+
+        /**
+         * Completes the subscription with remaining demand.
+         */
+        abstract void complete(long remain);
+
+        /**
+         * Completes the subscriber if all requested lines were sent,
+         * otherwise fails it with {@link NoSuchLineCountException}.
+         */
+        final void finish(Subscriber<?> subscriber, long remain) {
+            if (remain == Long.MAX_VALUE || remain == 0) {
                 subscriber.onComplete();
             } else {
                 subscriber.onError(new NoSuchLineCountException(remain));
@@ -252,52 +1090,184 @@ public final class LineReader implements Publisher<ByteBuffer> {
         }
     }
 
+    private static final class ParseRequest extends LineRequest implements LineSubscription {
+
+        private boolean continues;
+        private final Subscriber<? super ByteBuffer> subscriber;
+
+        private ParseRequest(Subscriber<? super ByteBuffer> subscriber, boolean awaits) {
+            super("lines", awaits);
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        boolean line(ByteBuffer chunk, int start, int end) {
+            if (!awaitDemand()) return false;
+
+            chunk.limit(end).position(start);
+            subscriber.onNext(chunk);
+            produced(1);
+            return proceeds();
+        }
+
+        @Override
+        boolean fragment(ByteBuffer chunk, int start, int end) {
+            chunk.limit(end).position(start);
+            continues = true;
+            subscriber.onNext(chunk);
+            continues = false;
+            return true;
+        }
+
+        @Override
+        public boolean continues() {
+            return continues;
+        }
+
+        @Override
+        void fail(Throwable e) {
+            subscriber.onError(e);
+        }
+
+        @Override
+        void complete(long remain) {
+            finish(subscriber, remain);
+        }
+    }
+
     /**
-     * Allocates memory by 4096-byte regions for file reading,
-     * keeps bytes reserved by LineParser. When general memory capacity isn't enough
-     * it tries to do compression and reusing, otherwise it will use
-     * as much memory as needed with attempts to use general memory again.
+     * Allocates heap or direct memory by pages for file reading (4096-byte pages
+     * of 32KB general memory by default), keeps bytes reserved by LineParser.
+     * When general memory capacity isn't enough it tries to do compression and reusing,
+     * otherwise it will use as much memory as needed with attempts to use general memory again.
+     * In adaptive mode pages grow while reads fill them entirely and general memory
+     * grows to hold longer lines instead of swapping them into temporal memory.
+     * Memory could be taken from a {@link BufferPool}, then it's returned to the pool
+     * when it isn't needed anymore or on {@link #release()}.
      *
      * @author Alexey Zhytnik
      */
     static final class MemoryAllocator implements Supplier<ByteBuffer> {
 
-        private static final int PAGE_SIZE = 4096;
-        private static final int GENERAL_MEMORY_SIZE = 8 * PAGE_SIZE;
+        static final int PAGE_SIZE = 4096;
+        static final int GENERAL_MEMORY_SIZE = 8 * PAGE_SIZE;
 
+        private static final int GENERAL_PAGES = 8;
+        private static final int MAX_ADAPTIVE_PAGE_SIZE = 256 * 1024;
+
+        private int pageSize;
+        private ByteBuffer general;
         private ByteBuffer temporal;
-        private final ByteBuffer general;
+
+        private int expectedLimit;
+        private ByteBuffer issued;
+
+        private final boolean direct;
+        private final boolean adaptive;
+        private final int maxPageSize;
+        private final BufferPool pool;
 
         MemoryAllocator() {
-            general = ByteBuffer
-                    .allocate(GENERAL_MEMORY_SIZE)
+            this(false);
+        }
+
+        MemoryAllocator(boolean direct) {
+            this(direct, PAGE_SIZE, GENERAL_MEMORY_SIZE, false, null);
+        }
+
+        MemoryAllocator(boolean direct, int pageSize, int generalSize, boolean adaptive, BufferPool pool) {
+            this.pool = pool;
+            this.direct = direct;
+            this.adaptive = adaptive;
+            this.pageSize = pageSize;
+            this.maxPageSize = Math.max(pageSize, MAX_ADAPTIVE_PAGE_SIZE);
+            this.general = allocate(generalSize)
                     .limit(0)
                     .mark();
         }
 
+        private ByteBuffer allocate(int capacity) {
+            if (pool != null) {
+                return pool.acquire(capacity, direct);
+            }
+            return direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+        }
+
+        private void free(ByteBuffer memory) {
+            if (pool != null) pool.release(memory);
+        }
+
+        /**
+         * Returns used memory to the pool, the allocator shouldn't be used after releasing.
+         */
+        void release() {
+            if (temporal != null) free(temporal);
+            free(general);
+
+            temporal = null;
+            general = null;
+            issued = null;
+        }
+
         /**
          * Returns a ByteBuffer with clean bytes from position to limit (exclusive).
          * Between invokes keeps previously returned bytes from mark to limit (exclusive),
          * but their place in memory and itself memory could be changed.
          *
-         * @return a ByteBuffer which contains 4096 clean bytes for file reading.
+         * @return a ByteBuffer which contains a page of clean bytes for file reading.
          */
         @Override
         public ByteBuffer get() {
+            if (adaptive && wasFilled()) growPage();
+
             final ByteBuffer memory = fetchMemory();
             if (tryAddCleanPage(memory) || tryCompact(memory)) {
-                return memory;
+                return issue(memory);
             } else {
-                return swapToTemporal(memory);
+                return issue(swapToTemporal(memory));
+            }
+        }
+
+        private ByteBuffer issue(ByteBuffer memory) {
+            issued = memory;
+            expectedLimit = memory.limit();
+            return memory;
+        }
+
+        private boolean wasFilled() {
+            return issued != null && issued.limit() == expectedLimit;
+        }
+
+        /**
+         * Doubles the page and keeps general memory large enough for several pages.
+         */
+        private void growPage() {
+            if (pageSize >= maxPageSize) return;
+
+            pageSize = Math.min(2 * pageSize, maxPageSize);
+
+            final int capacity = GENERAL_PAGES * pageSize;
+            if (general.capacity() < capacity) {
+                final ByteBuffer previous = general;
+
+                general = relocate(previous, capacity);
+                free(previous);
             }
         }
 
+        /**
+         * Returns the max count of kept bytes which never need additional memory.
+         */
+        int fragmentSize() {
+            return Math.max(general.capacity() - 2 * pageSize, 1);
+        }
+
         private ByteBuffer fetchMemory() {
             return temporal == null ? general : trySwapToGeneral();
         }
 
         private boolean tryAddCleanPage(ByteBuffer memory) {
-            if (memory.capacity() - memory.limit() >= PAGE_SIZE) {
+            if (memory.capacity() - memory.limit() >= pageSize) {
                 addCleanPage(memory, memory.limit());
                 return true;
             }
@@ -305,7 +1275,7 @@ public final class LineReader implements Publisher<ByteBuffer> {
         }
 
         private boolean tryCompact(ByteBuffer memory) {
-            if (memory.reset().position() >= PAGE_SIZE) {
+            if (memory.reset().position() >= pageSize) {
                 compact(memory);
                 return true;
             }
@@ -313,7 +1283,7 @@ public final class LineReader implements Publisher<ByteBuffer> {
         }
 
         private void addCleanPage(ByteBuffer memory, int to) {
-            memory.position(to).limit(to + PAGE_SIZE);
+            memory.position(to).limit(to + pageSize);
         }
 
         private void compact(ByteBuffer memory) {
@@ -330,13 +1300,14 @@ public final class LineReader implements Publisher<ByteBuffer> {
 
         private ByteBuffer trySwapToGeneral() {
             int payload = temporal.limit() - temporal.reset().position();
-            if (payload > (GENERAL_MEMORY_SIZE - PAGE_SIZE)) {
+            if (payload > (general.capacity() - pageSize)) {
                 return temporal;
             }
             prepareForRead(general);
             general.put(temporal);
             general.limit(payload);
 
+            free(temporal);
             temporal = null;
             return general;
         }
@@ -344,21 +1315,36 @@ public final class LineReader implements Publisher<ByteBuffer> {
         /**
          * Makes swap into a bigger memory region (usually is never invoked).
          * Exists for the worst use case: processing of a line
-         * which is greater than 32768 characters.
+         * which is greater than general memory. In adaptive mode
+         * the bigger region becomes general memory.
          */
         private ByteBuffer swapToTemporal(ByteBuffer memory) {
-            Logger.getLogger("MemoryAllocator").warning("Using additional memory!");
+            final int payload = memory.limit() - memory.reset().position();
+            final ByteBuffer target = relocate(memory, 2 * memory.capacity());
 
-            final int payload = memory.limit() - memory.position();
+            addCleanPage(target, payload);
+
+            if (adaptive) {
+                Logger.getLogger("MemoryAllocator").fine("Growing general memory!");
+                general = target;
+                free(memory);
+            } else {
+                Logger.getLogger("MemoryAllocator").warning("Using additional memory!");
+                if (memory == temporal) free(memory);
+                temporal = target;
+            }
+            return target;
+        }
 
-            final ByteBuffer target = ByteBuffer
-                    .allocate(2 * memory.capacity())
-                    .put(memory);
+        /**
+         * Moves bytes from mark to limit (exclusive) into the start of a new memory region.
+         */
+        private ByteBuffer relocate(ByteBuffer memory, int capacity) {
+            final int payload = memory.limit() - memory.reset().position();
+            final ByteBuffer target = allocate(capacity).put(memory);
 
             prepareForRead(target);
-            addCleanPage(target, payload);
-
-            temporal = target;
+            target.limit(payload);
             return target;
         }
     }
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2018 Alexey Zhytnik
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zhytnik.reactive.io;
+
+/**
+ * Statistics of file lines: line count, non-empty line count and max line length in bytes
+ * (without line terminators). Lines are detected like by {@link LineReader}.
+ *
+ * @author Alexey Zhytnik
+ * @see LineReader#statistics()
+ * @see ParallelLineReader#statistics()
+ */
+public final class LineStatistics {
+
+    private final long lines;
+    private final long nonEmptyLines;
+    private final long maxLength;
+
+    LineStatistics(long lines, long nonEmptyLines, long maxLength) {
+        this.lines = lines;
+        this.nonEmptyLines = nonEmptyLines;
+        this.maxLength = maxLength;
+    }
+
+    /**
+     * Combines statistics of adjacent line-aligned ranges.
+     */
+    LineStatistics merge(LineStatistics other) {
+        return new LineStatistics(
+                lines + other.lines,
+                nonEmptyLines + other.nonEmptyLines,
+                Math.max(maxLength, other.maxLength)
+        );
+    }
+
+    /**
+     * @return the count of all lines
+     */
+    public long lines() {
+        return lines;
+    }
+
+    /**
+     * @return the count of lines which have at least one byte
+     */
+    public long nonEmptyLines() {
+        return nonEmptyLines;
+    }
+
+    /**
+     * @return the byte count of the longest line, 0 for an empty file
+     */
+    public long maxLength() {
+        return maxLength;
+    }
+
+    @Override
+    public String toString() {
+        return "LineStatistics{lines=" + lines + ", nonEmptyLines=" + nonEmptyLines + ", maxLength=" + maxLength + '}';
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2018 Alexey Zhytnik
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zhytnik.reactive.io;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Searches line terminators ('\r' and '\n') in chunks of a file.
+ * Uses SWAR search {@link SwarTerminators}, the multi-release version for Java 17+
+ * uses SIMD search by {@code jdk.incubator.vector} when the module is added.
+ *
+ * @author Alexey Zhytnik
+ */
+final class LineTerminators {
+
+    private LineTerminators() {
+    }
+
+    /**
+     * Finds the first line terminator in the chunk from {@code from} to {@code to} (exclusive).
+     * Doesn't change position, limit and mark of the chunk.
+     *
+     * @return the index of the terminator or {@code to} if there's no terminator
+     */
+    static int indexOf(ByteBuffer chunk, int from, int to) {
+        return SwarTerminators.indexOf(chunk, from, to);
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2018 Alexey Zhytnik
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zhytnik.reactive.io;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A reusable {@link CharSequence} view of a line, so lines could be processed
+ * by regular expressions and other text operations without a {@code String} per line.
+ * Bytes of ASCII lines (detected by 8 bytes at a time) and of all ISO-8859-1 lines are
+ * used as chars without copying, other lines are decoded into reusable memory
+ * by a reusable decoder, malformed bytes are replaced like {@code String} constructors do.
+ * Supported charsets are the same as {@link LineReader} supports.
+ * Warning: the view and its subsequences are valid only while the line's bytes exist
+ * and until the next {@link #wrap(ByteBuffer)}.
+ *
+ * @author Alexey Zhytnik
+ */
+public final class LineText implements CharSequence {
+
+    private static final long HIGH_BITS = 0x8080808080808080L;
+    private static final int INITIAL_CAPACITY = 256;
+
+    private final CharsetDecoder decoder;
+
+    private ByteBuffer bytes;
+    private int start;
+    private int length;
+
+    private CharBuffer chars;
+    private boolean decoded;
+
+    /**
+     * Constructs a view of UTF-8 lines.
+     */
+    public LineText() {
+        this(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Constructs a view of lines in the charset.
+     *
+     * @param charset the charset of lines: UTF-8, US-ASCII or ISO-8859-1
+     */
+    public LineText(Charset charset) {
+        if (charset.equals(StandardCharsets.ISO_8859_1)) {
+            this.decoder = null;
+        } else if (charset.equals(StandardCharsets.UTF_8) || charset.equals(StandardCharsets.US_ASCII)) {
+            this.decoder = charset.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        } else {
+            throw new IllegalArgumentException(charset + " isn't supported!");
+        }
+    }
+
+    private LineText(ByteBuffer bytes, int start, int length) {
+        this.decoder = null;
+        this.bytes = bytes;
+        this.start = start;
+        this.length = length;
+    }
+
+    /**
+     * Makes this view represent the line which is placed from position to limit (exclusive).
+     * Doesn't change position, limit and mark of the line.
+     *
+     * @param line the bytes of the line
+     * @return this view
+     */
+    public LineText wrap(ByteBuffer line) {
+        bytes = line;
+        start = line.position();
+        length = line.remaining();
+        decoded = decoder != null && !isAscii(line, start, line.limit());
+
+        if (decoded) decode(line);
+        return this;
+    }
+
+    /**
+     * @return {@code true} if chars are bytes of the line, {@code false} if the line was decoded
+     */
+    public boolean isLatin1() {
+        return !decoded;
+    }
+
+    @Override
+    public int length() {
+        return decoded ? chars.limit() : length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (decoded) return chars.get(index);
+
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("Index " + index + " is out of " + length + " chars!");
+        }
+        return (char) (bytes.get(start + index) & 0xff);
+    }
+
+    /**
+     * Returns a view of chars of this view, chars aren't copied.
+     */
+    @Override
+    public CharSequence subSequence(int from, int to) {
+        if (from < 0 || to > length() || from > to) {
+            throw new IndexOutOfBoundsException("Range [" + from + ", " + to + ") is out of " + length() + " chars!");
+        }
+        return decoded ? chars.subSequence(from, to) : new LineText(bytes, start + from, to - from);
+    }
+
+    @Override
+    public String toString() {
+        if (decoded) return chars.toString();
+
+        if (bytes.hasArray()) {
+            return new String(bytes.array(), bytes.arrayOffset() + start, length, StandardCharsets.ISO_8859_1);
+        }
+        final byte[] copy = new byte[length];
+        for (int i = 0; i < length; i++) {
+            copy[i] = bytes.get(start + i);
+        }
+        return new String(copy, StandardCharsets.ISO_8859_1);
+    }
+
+    private void decode(ByteBuffer line) {
+        if (chars == null || chars.capacity() < length) {
+            chars = CharBuffer.allocate(Math.max(INITIAL_CAPACITY, Integer.highestOneBit(length) << 1));
+        }
+        chars.clear();
+        decoder.reset();
+        decoder.decode(line, chars, true);
+        decoder.flush(chars);
+        chars.flip();
+        line.position(start);
+    }
+
+    /**
+     * Checks high bits of 8 bytes at a time, only a tail which is less than 8 bytes is checked byte by byte.
+     */
+    static boolean isAscii(ByteBuffer bytes, int from, int to) {
+        int i = from;
+        for (; i <= to - Long.BYTES; i += Long.BYTES) {
+            if ((bytes.getLong(i) & HIGH_BITS) != 0) return false;
+        }
+        for (; i < to; i++) {
+            if (bytes.get(i) < 0) return false;
+        }
+        return true;
+    }
+}
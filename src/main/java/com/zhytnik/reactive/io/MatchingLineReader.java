@@ -0,0 +1,283 @@
+/*
+ * Copyright 2018 Alexey Zhytnik
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zhytnik.reactive.io;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.Flow.Publisher;
+import java.util.concurrent.Flow.Subscriber;
+import java.util.concurrent.Flow.Subscription;
+
+/**
+ * A line by line file reader which reads only lines that contain any of byte patterns (like grep).
+ * Patterns are searched in read chunks of the file by Boyer-Moore-Horspool search
+ * (one-byte patterns by 8 bytes at a time), line terminators are searched only around
+ * found patterns and at the end of a chunk, so lines of regions without patterns are never found.
+ * Detects the same lines as {@link LineReader} and reads the file with its memory settings.
+ *
+ * @author Alexey Zhytnik
+ */
+public final class MatchingLineReader implements Publisher<ByteBuffer> {
+
+    private final LineReader reader;
+    private final Pattern[] patterns;
+    private final int maxLength;
+
+    /**
+     * Constructs a MatchingLineReader associated with the file.
+     *
+     * @param path     the path to file for reading
+     * @param patterns the non-empty byte patterns without line terminators
+     */
+    public MatchingLineReader(Path path, byte[]... patterns) {
+        this(new LineReader(path), patterns);
+    }
+
+    /**
+     * Constructs a MatchingLineReader which reads the whole file of the LineReader
+     * with its memory settings (memory, pages, mapping, pool and gzip).
+     *
+     * @param reader   the reader of the whole file
+     * @param patterns the non-empty byte patterns without line terminators
+     */
+    public MatchingLineReader(LineReader reader, byte[]... patterns) {
+        if (patterns.length == 0) {
+            throw new IllegalArgumentException("There're no patterns!");
+        }
+        if (reader.start() != 0 || reader.skip() != 0 || reader.end() != Long.MAX_VALUE || reader.delimited()) {
+            throw new IllegalArgumentException("Only all lines of the file could be matched!");
+        }
+        this.reader = reader;
+        this.patterns = new Pattern[patterns.length];
+
+        int max = 0;
+        for (int i = 0; i < patterns.length; i++) {
+            this.patterns[i] = new Pattern(patterns[i]);
+            max = Math.max(max, patterns[i].length);
+        }
+        this.maxLength = max;
+    }
+
+    /**
+     * Reads lines of the file which contain any of the patterns. Follows {@link LineReader}
+     * contract: reads only requested count of matching lines, if the end of the file is reached
+     * before requested line count then {@link LineReader.NoSuchLineCountException} is thrown.
+     * Warnings: bytes of each line exist only inside invoked body of {@link Subscriber#onNext(Object)},
+     * do not change bytes after limit position (inclusive).
+     *
+     * @param subscriber the subscriber-reader
+     * @see LineReader#subscribe(Subscriber)
+     */
+    @Override
+    public void subscribe(Subscriber<? super ByteBuffer> subscriber) {
+        try (final LineReader.LineRequest r = LineReader.request(subscriber, reader.awaits())) {
+            subscriber.onSubscribe(r);
+
+            if (r.awaitDemand()) {
+                final LineReader.MemoryAllocator allocator = reader.allocator();
+                try {
+                    reader.files().subscribe(new MatchParser(r, allocator));
+                } finally {
+                    if (allocator != null) allocator.release();
+                }
+            }
+        }
+    }
+
+    private static boolean isTerminator(byte c) {
+        return c == '\n' || c == '\r';
+    }
+
+    /**
+     * A pattern with the table of Boyer-Moore-Horspool shifts.
+     */
+    private static final class Pattern {
+
+        private final byte[] bytes;
+        private final int[] shifts;
+
+        private Pattern(byte[] bytes) {
+            if (bytes.length == 0) {
+                throw new IllegalArgumentException("Pattern is empty!");
+            }
+            for (byte b : bytes) {
+                if (isTerminator(b)) throw new IllegalArgumentException("Pattern contains a line terminator!");
+            }
+            this.bytes = bytes.clone();
+            this.shifts = new int[256];
+
+            final int last = bytes.length - 1;
+            Arrays.fill(shifts, bytes.length);
+            for (int i = 0; i < last; i++) {
+                shifts[bytes[i] & 0xFF] = last - i;
+            }
+        }
+
+        /**
+         * Finds the first occurrence in the chunk from {@code from} to {@code to} (exclusive).
+         *
+         * @return the index of the occurrence or {@code to} if there's no occurrence
+         */
+        private int indexOf(ByteBuffer chunk, int from, int to) {
+            if (bytes.length == 1) return Delimiters.indexOf(chunk, bytes[0], from, to);
+
+            final int last = bytes.length - 1;
+            final byte lastByte = bytes[last];
+
+            for (int i = from; i < to - last; ) {
+                final byte b = chunk.get(i + last);
+
+                if (b == lastByte && matches(chunk, i)) return i;
+
+                i += shifts[b & 0xFF];
+            }
+            return to;
+        }
+
+        private boolean matches(ByteBuffer chunk, int index) {
+            for (int i = bytes.length - 2; i >= 0; i--) {
+                if (chunk.get(index + i) != bytes[i]) return false;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * A FileReader subscriber which searches patterns and sends lines around them.
+     * Between invocations saves start of the last line of a chunk at mark position and
+     * count of bytes after it which were searched for patterns, so a pattern which is
+     * divided between chunks is found by the next invocation. Positions of patterns are
+     * cached for the current chunk, so each pattern is searched once per region.
+     */
+    private final class MatchParser implements Subscriber<ByteBuffer> {
+
+        private int scanned;
+        private Runnable interrupter;
+        private ByteBuffer lastChunk;
+
+        private final int[] found;
+        private final LineReader.LineRequest request;
+        private final LineReader.MemoryAllocator allocator;
+
+        private MatchParser(LineReader.LineRequest request, LineReader.MemoryAllocator allocator) {
+            this.request = request;
+            this.allocator = allocator;
+            this.found = new int[patterns.length];
+        }
+
+        @Override
+        public void onSubscribe(Subscription s) {
+            reader.configure((FileReader.ReadSubscription) s, allocator);
+            s.request(Long.MAX_VALUE);
+            interrupter = s::cancel;
+        }
+
+        @Override
+        public void onNext(ByteBuffer chunk) {
+            final int limit = chunk.limit();
+            final int nextStart = parse(chunk, limit);
+
+            chunk.limit(limit);
+            if (request.parsed(chunk)) {
+                lastChunk = chunk.position(nextStart).mark();
+            } else {
+                interrupter.run();
+            }
+        }
+
+        /**
+         * Sends matching lines of the chunk.
+         *
+         * @return the start of the last line which isn't sent
+         */
+        private int parse(ByteBuffer chunk, int limit) {
+            Arrays.fill(found, -1);
+
+            int floor = chunk.reset().position();
+            int from = floor + scanned;
+
+            for (int match = find(chunk, from, limit); match < limit; match = find(chunk, from, limit)) {
+                final int start = lineStart(chunk, floor, match);
+                final int end = LineTerminators.indexOf(chunk, match, limit);
+
+                if (end == limit) {
+                    scanned = match - start;
+                    return start;
+                }
+                final boolean active = request.line(chunk, start, end);
+                chunk.limit(limit);
+
+                from = floor = end + 1;
+
+                if (!active) {
+                    scanned = 0;
+                    return floor;
+                }
+            }
+            final int start = lineStart(chunk, floor, limit);
+
+            scanned = Math.max(limit - maxLength + 1, start) - start;
+            return start;
+        }
+
+        /**
+         * Finds the first occurrence of any pattern.
+         */
+        private int find(ByteBuffer chunk, int from, int limit) {
+            int first = limit;
+
+            for (int i = 0; i < patterns.length; i++) {
+                if (found[i] < from) found[i] = patterns[i].indexOf(chunk, from, limit);
+
+                first = Math.min(first, found[i]);
+            }
+            return first;
+        }
+
+        /**
+         * Finds the start of the line which contains the byte before the index.
+         */
+        private int lineStart(ByteBuffer chunk, int floor, int index) {
+            for (int i = index - 1; i >= floor; i--) {
+                if (isTerminator(chunk.get(i))) return i + 1;
+            }
+            return floor;
+        }
+
+        /**
+         * Sends the last line if it contains any pattern.
+         */
+        @Override
+        public void onComplete() {
+            if (lastChunk != null && lastChunk.reset().hasRemaining() && request.proceeds()) {
+                final int start = lastChunk.position();
+                final int end = lastChunk.limit();
+
+                Arrays.fill(found, -1);
+                if (find(lastChunk, start + scanned, end) < end) {
+                    request.line(lastChunk, start, end);
+                    request.parsed(lastChunk);
+                }
+            }
+        }
+
+        @Override
+        public void onError(Throwable e) {
+            request.onError(e);
+        }
+    }
+}
@@ -0,0 +1,446 @@
+/*
+ * Copyright 2018 Alexey Zhytnik
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zhytnik.reactive.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Flow.Publisher;
+import java.util.concurrent.Flow.Subscriber;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * A line by line reader of many files which reads up to {@code parallelism} files
+ * concurrently in a {@link ForkJoinPool} and sends their lines to one subscriber,
+ * each line is tagged with its source file. By default readers of all files
+ * share one {@link BufferPool}, so memory is reused across files.
+ * In ordered mode lines are sent in order of files, lines of files which are read ahead
+ * of the current one are copied and kept until the file is sent (at most the remaining
+ * demand per file and 4MB of all files, then reading of the file waits for its turn),
+ * in unordered mode lines are sent as soon as they're read without copying.
+ *
+ * @author Alexey Zhytnik
+ */
+public final class MultiFileLineReader implements Publisher<MultiFileLineReader.Line> {
+
+    private static final int READ_AHEAD = 4 * 1024 * 1024;
+
+    private final List<Path> paths;
+    private final Function<Path, LineReader> readers;
+    private final int parallelism;
+    private final boolean ordered;
+    private final ForkJoinPool pool;
+    private final int readAhead;
+
+    /**
+     * Constructs a MultiFileLineReader which uses {@link ForkJoinPool#commonPool()}
+     * and reads files with default settings of {@link LineReader}.
+     *
+     * @param paths       the paths to files for reading
+     * @param parallelism the maximum count of concurrently read files
+     * @param ordered     whether lines should be sent in order of files
+     */
+    public MultiFileLineReader(Collection<Path> paths, int parallelism, boolean ordered) {
+        this(paths, pooled(new BufferPool()), parallelism, ordered, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructs a MultiFileLineReader which reads each file by its LineReader.
+     * To reuse memory across files readers should share a {@link BufferPool}.
+     * Fragments of lines aren't supported.
+     *
+     * @param paths       the paths to files for reading
+     * @param readers     the factory of files' readers
+     * @param parallelism the maximum count of concurrently read files
+     * @param ordered     whether lines should be sent in order of files
+     * @param pool        the pool which reads files
+     */
+    public MultiFileLineReader(Collection<Path> paths, Function<Path, LineReader> readers,
+                               int parallelism, boolean ordered, ForkJoinPool pool) {
+        this(paths, readers, parallelism, ordered, pool, READ_AHEAD);
+    }
+
+    /**
+     * @param readAhead the maximum count of bytes buffered by files which wait for their turn
+     */
+    MultiFileLineReader(Collection<Path> paths, Function<Path, LineReader> readers,
+                        int parallelism, boolean ordered, ForkJoinPool pool, int readAhead) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("Parallelism is " + parallelism + "!");
+        }
+        this.paths = new ArrayList<>(paths);
+        this.readers = readers;
+        this.parallelism = parallelism;
+        this.ordered = ordered;
+        this.pool = pool;
+        this.readAhead = readAhead;
+    }
+
+    /**
+     * Lists regular files of the directory whose names match the glob pattern.
+     *
+     * @param directory the directory with files
+     * @param glob      the pattern of file names, for example {@code "*.log"}
+     * @return sorted paths of files
+     * @throws IOException if the directory can't be read
+     * @see java.nio.file.FileSystem#getPathMatcher(String)
+     */
+    public static List<Path> glob(Path directory, String glob) throws IOException {
+        final List<Path> files = new ArrayList<>();
+
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, glob)) {
+            for (Path file : stream) {
+                if (Files.isRegularFile(file)) files.add(file);
+            }
+        }
+        Collections.sort(files);
+        return files;
+    }
+
+    private static Function<Path, LineReader> pooled(BufferPool buffers) {
+        return path -> LineReader.builder(path).pool(buffers).build();
+    }
+
+    /**
+     * Reads lines of files and waits for completion of all of them. Follows {@link LineReader} contract:
+     * reads only requested count of lines of all files, if the end of the last file is reached
+     * before requested line count then {@link LineReader.NoSuchLineCountException} is thrown.
+     * Fails fast on the first failure of any file. Signals to the subscriber are serialized,
+     * but they could come from different threads of the pool.
+     * Warnings: a line and its bytes exist only inside invoked body of {@link Subscriber#onNext(Object)}.
+     *
+     * @param subscriber the subscriber-reader
+     * @see LineReader#subscribe(Subscriber)
+     */
+    @Override
+    public void subscribe(Subscriber<? super Line> subscriber) {
+        try (final FilesRequest r = new FilesRequest(subscriber)) {
+            subscriber.onSubscribe(r);
+
+            if (r.isActive()) {
+                final int workers = Math.min(parallelism, paths.size());
+                final List<ForkJoinTask<?>> tasks = new ArrayList<>(workers);
+
+                for (int i = 0; i < workers; i++) {
+                    tasks.add(pool.submit(() -> read(r)));
+                }
+                for (ForkJoinTask<?> task : tasks) {
+                    task.join();
+                }
+            }
+        }
+    }
+
+    /**
+     * Takes files one by one and reads them while the request is active.
+     */
+    private void read(FilesRequest r) {
+        for (Source source = r.take(); source != null; source = r.take()) {
+            final FileRequest file = new FileRequest(r, source);
+            try {
+                file.request(Long.MAX_VALUE);
+                readers.apply(source.path).parse(file);
+            } catch (Exception e) {
+                file.onError(e);
+            }
+            file.close();
+        }
+    }
+
+    /**
+     * Represents a line of a file. Bytes of the line are placed from position to limit (exclusive).
+     *
+     * @author Alexey Zhytnik
+     */
+    public static final class Line {
+
+        private Path path;
+        private ByteBuffer bytes;
+
+        private Line() {
+        }
+
+        /**
+         * @return the path to the source file
+         */
+        public Path path() {
+            return path;
+        }
+
+        /**
+         * @return the bytes of the line
+         */
+        public ByteBuffer bytes() {
+            return bytes;
+        }
+    }
+
+    /**
+     * A file which is taken for reading. In ordered mode keeps copies of lines
+     * which are read before the file becomes the current one.
+     */
+    private static final class Source {
+
+        private static final int INITIAL_CAPACITY = 4096;
+
+        private final int index;
+        private final Path path;
+
+        private int size;
+        private int sent;
+        private int[] ends;
+        private ByteBuffer copies;
+        private boolean done;
+
+        private Source(int index, Path path) {
+            this.index = index;
+            this.path = path;
+        }
+
+        /**
+         * @return the count of kept bytes
+         */
+        private int copied() {
+            return (copies == null) ? 0 : copies.position();
+        }
+
+        /**
+         * Keeps a copy of the line, the caller guarantees that all copies fit the limit.
+         */
+        private void add(ByteBuffer chunk, int start, int end, int limit) {
+            if (copies == null) {
+                copies = ByteBuffer.allocate(Math.min(Math.max(INITIAL_CAPACITY, end - start), limit));
+                ends = new int[16];
+            }
+            if (copies.remaining() < end - start) {
+                final long required = (long) copies.position() + end - start;
+                final long capacity = Math.min(Math.max(2L * copies.capacity(), required), limit);
+                final ByteBuffer bigger = ByteBuffer.allocate((int) capacity);
+                copies.flip();
+                copies = bigger.put(copies);
+            }
+            if (size == ends.length) {
+                ends = Arrays.copyOf(ends, 2 * size);
+            }
+            chunk.limit(end).position(start);
+            copies.put(chunk);
+            ends[size++] = copies.position();
+        }
+    }
+
+    /**
+     * The subscription to lines of all files. Lines are sent under the lock,
+     * so signals are serialized and the subscriber sees effects of previous signals.
+     * Lines of a file which isn't the current one in ordered mode wait on the condition
+     * when their count reaches the remaining demand or their bytes don't fit the read-ahead limit.
+     */
+    private final class FilesRequest extends LineReader.LineRequest {
+
+        private int next;
+        private int head;
+        private long buffered;
+        private final List<Source> taken = new ArrayList<>();
+
+        private final Line line = new Line();
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition advanced = lock.newCondition();
+        private final Subscriber<? super Line> subscriber;
+
+        private FilesRequest(Subscriber<? super Line> subscriber) {
+            super("lines");
+            this.subscriber = subscriber;
+        }
+
+        /**
+         * @return the next file for reading or {@code null} if there're no more files
+         */
+        private Source take() {
+            lock.lock();
+            try {
+                if (next == paths.size() || !isActive()) return null;
+
+                final Source source = new Source(next, paths.get(next++));
+                taken.add(source);
+                return source;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Sends the line of the file or keeps its copy.
+         *
+         * @return {@code false} to stop reading of the file
+         */
+        private boolean send(Source source, ByteBuffer chunk, int start, int end) {
+            lock.lock();
+            try {
+                for (; ; ) {
+                    if (!isActive()) return false;
+
+                    if (!ordered || source.index == head) {
+                        if (!flush(source)) return false;
+
+                        line.path = source.path;
+                        return line(chunk, start, end);
+                    }
+                    if (source.size < demand() && buffered + end - start <= readAhead) {
+                        source.add(chunk, start, end, readAhead);
+                        buffered += end - start;
+                        return true;
+                    }
+                    advanced.awaitUninterruptibly();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Marks the file as read, in ordered mode sends copies of lines of next read files.
+         */
+        private void finished(Source source) {
+            lock.lock();
+            try {
+                source.done = true;
+
+                while (ordered && head < taken.size() && taken.get(head).done && flush(taken.get(head))) {
+                    taken.set(head++, null);
+                }
+                advanced.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Sends kept copies of lines of the file.
+         *
+         * @return {@code false} if the request isn't active
+         */
+        private boolean flush(Source source) {
+            for (; source.sent < source.size; source.sent++) {
+                if (!isActive()) return false;
+
+                final int start = (source.sent == 0) ? 0 : source.ends[source.sent - 1];
+                line.path = source.path;
+                line(source.copies, start, source.ends[source.sent]);
+            }
+            buffered -= source.copied();
+            source.copies = null;
+            source.ends = null;
+            return isActive();
+        }
+
+        /**
+         * Sends the line, should be invoked under the lock. When requested lines are sent,
+         * files which wait for their turn are woken, so they stop reading.
+         */
+        @Override
+        boolean line(ByteBuffer chunk, int start, int end) {
+            chunk.limit(end).position(start);
+            line.bytes = chunk;
+            subscriber.onNext(line);
+            line.bytes = null;
+            produced(1);
+
+            if (isActive()) return true;
+            advanced.signalAll();
+            return false;
+        }
+
+        @Override
+        public void request(long n) {
+            super.request(n);
+            wake();
+        }
+
+        @Override
+        void onError(Throwable e) {
+            super.onError(e);
+            wake();
+        }
+
+        @Override
+        public void cancel() {
+            super.cancel();
+            wake();
+        }
+
+        private void wake() {
+            lock.lock();
+            try {
+                advanced.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        void fail(Throwable e) {
+            subscriber.onError(e);
+        }
+
+        @Override
+        void complete(long remain) {
+            finish(subscriber, remain);
+        }
+    }
+
+    /**
+     * Parses lines of one file into the shared request.
+     */
+    private static final class FileRequest extends LineReader.LineRequest {
+
+        private final Source source;
+        private final FilesRequest files;
+
+        private FileRequest(FilesRequest files, Source source) {
+            super("lines");
+            this.files = files;
+            this.source = source;
+        }
+
+        @Override
+        boolean line(ByteBuffer chunk, int start, int end) {
+            if (files.send(source, chunk, start, end)) return true;
+
+            cancel();
+            return false;
+        }
+
+        @Override
+        void fail(Throwable e) {
+            files.onError(e);
+        }
+
+        @Override
+        void complete(long remain) {
+            files.finished(source);
+        }
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ * Copyright 2018 Alexey Zhytnik
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zhytnik.reactive.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Flow.Subscriber;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.IntFunction;
+
+/**
+ * A line by line file reader which splits a file into line-aligned byte ranges
+ * and reads each range by a {@link LineReader} in a {@link ForkJoinPool}.
+ * Cut points of ranges are moved forward to starts of the next lines,
+ * so each line belongs to exactly one range, a CR LF pair is never divided.
+ * Ranges are read concurrently, each of them by its own subscriber.
+ *
+ * @author Alexey Zhytnik
+ */
+public final class ParallelLineReader {
+
+    private static final int SCAN_SIZE = 4096;
+
+    private final int parallelism;
+    private final LineReader reader;
+    private final ForkJoinPool pool;
+
+    /**
+     * Constructs a ParallelLineReader associated with the file
+     * which uses {@link ForkJoinPool#commonPool()}.
+     *
+     * @param path        the path to file for reading
+     * @param parallelism the maximum count of ranges
+     */
+    public ParallelLineReader(Path path, int parallelism) {
+        this(new LineReader(path), parallelism, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructs a ParallelLineReader which reads ranges
+     * with the same settings as the LineReader.
+     *
+     * @param reader      the reader of the whole file
+     * @param parallelism the maximum count of ranges
+     * @param pool        the pool which reads ranges
+     */
+    public ParallelLineReader(LineReader reader, int parallelism, ForkJoinPool pool) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("Parallelism is " + parallelism + "!");
+        }
+        this.reader = reader;
+        this.parallelism = parallelism;
+        this.pool = pool;
+    }
+
+    /**
+     * Splits the file into at most {@code parallelism} line-aligned ranges.
+     * Ranges could be less than requested if lines are long.
+     * If the file can't be accessed, it's read as one range which reports the failure.
+     * A gzip file is always read as one range, its decompressed content can't be split,
+     * records of a custom delimiter are also read as one range.
+     * Lines which are skipped by the reader are resolved into the start of the first range.
+     *
+     * @return readers of ranges in order of the file content
+     */
+    public List<LineReader> split() {
+        if (reader.compressed() || reader.delimited()) return Collections.singletonList(reader);
+
+        try (FileChannel channel = FileChannel.open(reader.path(), StandardOpenOption.READ)) {
+            final long size = channel.size();
+            final ByteBuffer buffer = ByteBuffer.allocate(SCAN_SIZE);
+            final List<LineReader> ranges = new ArrayList<>(parallelism);
+
+            final long start = skip(channel, reader.start(), reader.skip(), size, buffer);
+            final long end = Math.min(size, reader.end());
+
+            long from = start;
+            for (int i = 1; i <= parallelism && from < end; i++) {
+                final long cut = start + (end - start) / parallelism * i;
+                final long to = (i == parallelism) ? size : align(channel, Math.max(from, cut), size, buffer);
+
+                if (to > from) {
+                    ranges.add(reader.range(from, to));
+                    from = to;
+                }
+            }
+            return ranges.isEmpty() ? Collections.singletonList(reader) : ranges;
+        } catch (IOException e) {
+            return Collections.singletonList(reader);
+        }
+    }
+
+    /**
+     * Reads ranges of the file concurrently and waits for completion of all of them.
+     * Each range is read by its own subscriber, the subscriber's factory receives
+     * an index of the range in order of the file content, so results of ranges
+     * could be combined by indexes. Each subscriber follows {@link LineReader} contract.
+     *
+     * @param subscribers the factory of range subscribers
+     */
+    public void subscribe(IntFunction<? extends Subscriber<? super ByteBuffer>> subscribers) {
+        final List<LineReader> ranges = split();
+        final List<ForkJoinTask<?>> tasks = new ArrayList<>(ranges.size());
+
+        for (int i = 0; i < ranges.size(); i++) {
+            final LineReader range = ranges.get(i);
+            final Subscriber<? super ByteBuffer> subscriber = subscribers.apply(i);
+
+            tasks.add(pool.submit(() -> range.subscribe(subscriber)));
+        }
+        for (ForkJoinTask<?> task : tasks) {
+            task.join();
+        }
+    }
+
+    /**
+     * Collects statistics of ranges concurrently and combines them.
+     *
+     * @return the statistics of the file's lines
+     * @throws java.io.UncheckedIOException if the file can't be read
+     * @see LineReader#statistics()
+     */
+    public LineStatistics statistics() {
+        final List<ForkJoinTask<LineStatistics>> tasks = new ArrayList<>(parallelism);
+
+        for (LineReader range : split()) {
+            tasks.add(pool.submit(range::statistics));
+        }
+        LineStatistics result = new LineStatistics(0, 0, 0);
+        for (ForkJoinTask<LineStatistics> task : tasks) {
+            result = result.merge(task.join());
+        }
+        return result;
+    }
+
+    /**
+     * Finds start of the line which follows the skipped lines, a CR LF pair is one terminator.
+     */
+    private static long skip(FileChannel channel, long position, long lines, long size, ByteBuffer buffer) throws IOException {
+        boolean skipLF = false;
+
+        while (position < size) {
+            buffer.clear();
+            final int read = channel.read(buffer, position);
+
+            if (read <= 0) break;
+
+            for (int i = 0; i < read; i++) {
+                final byte c = buffer.get(i);
+
+                if (skipLF) {
+                    skipLF = false;
+                    if (c == '\n') continue;
+                }
+                if (lines == 0) return position + i;
+
+                if (c == '\n' || c == '\r') {
+                    lines--;
+                    skipLF = (c == '\r');
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    /**
+     * Finds start of the first line which starts at the position or after it.
+     */
+    private static long align(FileChannel channel, long cut, long size, ByteBuffer buffer) throws IOException {
+        if (cut == 0) return 0;
+
+        long position = cut - 1;
+
+        while (position < size) {
+            buffer.clear();
+            final int read = channel.read(buffer, position);
+
+            if (read <= 0) break;
+
+            for (int i = 0; i < read; i++) {
+                final byte c = buffer.get(i);
+
+                if (c == '\n') return position + i + 1;
+
+                if (c == '\r') {
+                    if (i + 1 < read) {
+                        return position + i + (buffer.get(i + 1) == '\n' ? 2 : 1);
+                    }
+                    if (position + i + 1 >= size) return size;
+
+                    position += i - read;
+                    break;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright 2018 Alexey Zhytnik
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zhytnik.reactive.io;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Flow.Publisher;
+import java.util.concurrent.Flow.Subscriber;
+import java.util.logging.Logger;
+
+/**
+ * A line by line file reader which reads lines in reverse order, from the end of the file
+ * to its start. Reads the file backwards by 4096-byte pages into 32KB of heap memory,
+ * so cost of reading depends only on requested lines, not on the file's size.
+ * Uses additional memory only for lines that don't fit (logs these allocations).
+ * Detects the same lines as {@link LineReader}: the last line terminator of the file
+ * doesn't produce an empty line, a CR LF pair is one terminator.
+ *
+ * @author Alexey Zhytnik
+ */
+public final class ReverseLineReader implements Publisher<ByteBuffer> {
+
+    private static final int PAGE_SIZE = 4096;
+    private static final int GENERAL_MEMORY_SIZE = 8 * PAGE_SIZE;
+
+    private final Path path;
+
+    /**
+     * Constructs a ReverseLineReader associated with the file.
+     *
+     * @param path the path to file for reading
+     */
+    public ReverseLineReader(Path path) {
+        this.path = path;
+    }
+
+    /**
+     * Reads lines of the file from the last one. Follows {@link LineReader} contract:
+     * reads only requested count of lines, if the start of the file is reached
+     * before requested line count then {@link LineReader.NoSuchLineCountException} is thrown.
+     *
+     * @param subscriber the subscriber-reader
+     * @see LineReader#subscribe(Subscriber)
+     */
+    @Override
+    public void subscribe(Subscriber<? super ByteBuffer> subscriber) {
+        try (final LineReader.LineRequest r = LineReader.request(subscriber, false)) {
+            subscriber.onSubscribe(r);
+
+            if (r.awaitDemand()) {
+                try (Pages pages = new Pages(FileChannel.open(path, StandardOpenOption.READ))) {
+                    pages.read(r);
+                } catch (Exception e) {
+                    r.onError(e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Loads the file backwards: bytes from the start of the loaded region
+     * till the end of the current line are kept at the end of memory,
+     * previous pages are read before them.
+     *
+     * @author Alexey Zhytnik
+     */
+    private static final class Pages implements AutoCloseable {
+
+        private byte[] memory = new byte[GENERAL_MEMORY_SIZE];
+        private ByteBuffer chunk = ByteBuffer.wrap(memory);
+
+        private int lo = memory.length;
+        private long loaded;
+
+        private final FileChannel channel;
+
+        private Pages(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        private void read(LineReader.LineRequest r) throws IOException {
+            loaded = channel.size();
+            if (loaded == 0) return;
+
+            long end = lastLineEnd(loaded);
+
+            while (r.isActive()) {
+                final long start = lineStart(end);
+
+                if (!r.line(chunk, index(start), index(end))) break;
+                chunk.limit(memory.length);
+
+                if (start == 0) break;
+
+                end = previousLineEnd(start);
+            }
+        }
+
+        /**
+         * Excludes the last line terminator of the file.
+         */
+        private long lastLineEnd(long size) throws IOException {
+            final byte last = byteAt(size - 1, size);
+
+            if (last == '\r') return size - 1;
+            if (last == '\n') return (size > 1 && byteAt(size - 2, size) == '\r') ? size - 2 : size - 1;
+            return size;
+        }
+
+        /**
+         * Returns the end of the line which precedes the line terminator before the start.
+         */
+        private long previousLineEnd(long start) throws IOException {
+            final long terminator = start - 1;
+
+            if (memory[index(terminator)] == '\n' && terminator > 0 && byteAt(terminator - 1, start) == '\r') {
+                return terminator - 1;
+            }
+            return terminator;
+        }
+
+        private long lineStart(long end) throws IOException {
+            long from = end;
+
+            for (; ; ) {
+                for (int i = index(from) - 1; i >= lo; i--) {
+                    final byte c = memory[i];
+                    if (c == '\n' || c == '\r') return loaded + (i - lo) + 1;
+                }
+                if (loaded == 0) return 0;
+
+                from = loaded;
+                load(end);
+            }
+        }
+
+        private byte byteAt(long offset, long keep) throws IOException {
+            while (offset < loaded) load(keep);
+            return memory[index(offset)];
+        }
+
+        private int index(long offset) {
+            return lo + (int) (offset - loaded);
+        }
+
+        /**
+         * Reads the page before loaded bytes, keeps loaded bytes before the offset.
+         */
+        private void load(long keep) throws IOException {
+            final int retained = (int) (keep - loaded);
+
+            if (lo < PAGE_SIZE) {
+                final byte[] target = (memory.length - retained < PAGE_SIZE) ? grow() : memory;
+
+                System.arraycopy(memory, lo, target, target.length - retained, retained);
+                lo = target.length - retained;
+                memory = target;
+                chunk = ByteBuffer.wrap(memory);
+            }
+            final int size = (int) Math.min(PAGE_SIZE, loaded);
+            final ByteBuffer page = ByteBuffer.wrap(memory, lo - size, size);
+
+            while (page.hasRemaining()) {
+                if (channel.read(page, loaded - size + page.position() - (lo - size)) < 0) {
+                    throw new EOFException("File was truncated during reading!");
+                }
+            }
+            lo -= size;
+            loaded -= size;
+        }
+
+        /**
+         * Makes memory bigger for the worst use case: processing of a line
+         * which is greater than 32768 characters.
+         */
+        private byte[] grow() {
+            Logger.getLogger("ReverseLineReader").warning("Using additional memory!");
+            return new byte[2 * memory.length];
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
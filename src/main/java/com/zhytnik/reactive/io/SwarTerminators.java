@@ -0,0 +1,76 @@
+/*
+ * Copyright 2018 Alexey Zhytnik
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zhytnik.reactive.io;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Searches line terminators ('\r' and '\n') by 8 bytes at a time (SWAR):
+ * reads a word as {@code long} and detects its bytes that are equal to terminators
+ * by bit tricks without branches. Only a tail which is less than 8 bytes is checked byte by byte.
+ *
+ * @author Alexey Zhytnik
+ */
+final class SwarTerminators {
+
+    private static final long CR = 0x0D0D0D0D0D0D0D0DL;
+    private static final long LF = 0x0A0A0A0A0A0A0A0AL;
+    private static final long LOW_BITS = 0x7F7F7F7F7F7F7F7FL;
+
+    private SwarTerminators() {
+    }
+
+    /**
+     * Finds the first line terminator in the chunk from {@code from} to {@code to} (exclusive).
+     * Doesn't change position, limit and mark of the chunk.
+     *
+     * @return the index of the terminator or {@code to} if there's no terminator
+     */
+    static int indexOf(ByteBuffer chunk, int from, int to) {
+        final boolean bigEndian = chunk.order() == ByteOrder.BIG_ENDIAN;
+
+        int i = from;
+        for (; i <= to - Long.BYTES; i += Long.BYTES) {
+            final long found = terminators(chunk.getLong(i));
+
+            if (found != 0) {
+                return i + ((bigEndian ? Long.numberOfLeadingZeros(found) : Long.numberOfTrailingZeros(found)) >>> 3);
+            }
+        }
+        for (; i < to; i++) {
+            final byte c = chunk.get(i);
+            if (c == '\r' || c == '\n') return i;
+        }
+        return to;
+    }
+
+    /**
+     * Sets the high bit of each byte of the word which is a line terminator.
+     */
+    static long terminators(long word) {
+        return zeros(word ^ CR) | zeros(word ^ LF);
+    }
+
+    /**
+     * Sets the high bit of each zero byte of the word,
+     * unlike the classic {@code (v - 0x01..) & ~v & 0x80..} it has no false positives.
+     */
+    static long zeros(long v) {
+        final long t = (v & LOW_BITS) + LOW_BITS;
+        return ~(t | v | LOW_BITS);
+    }
+}
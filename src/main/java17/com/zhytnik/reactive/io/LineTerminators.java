@@ -0,0 +1,63 @@
+/*
+ * Copyright 2018 Alexey Zhytnik
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zhytnik.reactive.io;
+
+import java.nio.ByteBuffer;
+import java.util.Optional;
+
+/**
+ * Searches line terminators ('\r' and '\n') in chunks of a file.
+ * Uses SIMD search {@link VectorTerminators} when {@code jdk.incubator.vector} module
+ * is added ({@code --add-modules jdk.incubator.vector}), otherwise SWAR search {@link SwarTerminators}.
+ *
+ * @author Alexey Zhytnik
+ */
+final class LineTerminators {
+
+    private static final boolean VECTORIZED = isVectorized();
+
+    private LineTerminators() {
+    }
+
+    /**
+     * Finds the first line terminator in the chunk from {@code from} to {@code to} (exclusive).
+     * Doesn't change position, limit and mark of the chunk.
+     *
+     * @return the index of the terminator or {@code to} if there's no terminator
+     */
+    static int indexOf(ByteBuffer chunk, int from, int to) {
+        if (VECTORIZED) {
+            return VectorTerminators.indexOf(chunk, from, to);
+        }
+        return SwarTerminators.indexOf(chunk, from, to);
+    }
+
+    /**
+     * Checks that the incubator module is present and its API is the same as at compile time.
+     */
+    private static boolean isVectorized() {
+        final Optional<Module> vector = ModuleLayer.boot().findModule("jdk.incubator.vector");
+        if (vector.isEmpty()) return false;
+
+        try {
+            LineTerminators.class.getModule().addReads(vector.get());
+            final ByteBuffer probe = ByteBuffer.allocate(256).put(200, (byte) '\n');
+            return VectorTerminators.indexOf(probe, 0, 256) == 200;
+        } catch (LinkageError | RuntimeException e) {
+            return false;
+        }
+    }
+}
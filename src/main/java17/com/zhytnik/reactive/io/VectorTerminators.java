@@ -0,0 +1,52 @@
+/*
+ * Copyright 2018 Alexey Zhytnik
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zhytnik.reactive.io;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Searches line terminators ('\r' and '\n') by the widest vectors of the platform
+ * (32 bytes for AVX2, 64 bytes for AVX-512): compares a vector with both terminators
+ * and takes the first position from the mask. A tail which is less than a vector
+ * is searched by {@link SwarTerminators}.
+ *
+ * @author Alexey Zhytnik
+ */
+final class VectorTerminators {
+
+    private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED;
+
+    private VectorTerminators() {
+    }
+
+    static int indexOf(ByteBuffer chunk, int from, int to) {
+        final int length = SPECIES.length();
+
+        int i = from;
+        for (; i <= to - length; i += length) {
+            final ByteVector bytes = ByteVector.fromByteBuffer(SPECIES, chunk, i, ByteOrder.nativeOrder());
+            final VectorMask<Byte> found = bytes.eq((byte) '\r').or(bytes.eq((byte) '\n'));
+
+            if (found.anyTrue()) return i + found.firstTrue();
+        }
+        return SwarTerminators.indexOf(chunk, i, to);
+    }
+}
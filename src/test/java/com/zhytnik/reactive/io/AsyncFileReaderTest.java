@@ -0,0 +1,247 @@
+/*
+ * Copyright 2018 Alexey Zhytnik
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zhytnik.reactive.io;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.EOFException;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+
+import static java.lang.Long.MAX_VALUE;
+import static java.nio.ByteBuffer.allocate;
+import static java.nio.file.Files.write;
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Alexey Zhytnik
+ */
+public class AsyncFileReaderTest {
+
+    @ClassRule
+    public static TemporaryFolder files = new TemporaryFolder();
+
+    File file;
+    AsyncFileReader reader;
+    AsyncAssertionSubscriber subscriber;
+    List<byte[]> preparedChunks;
+
+    @Before
+    public void setUp() throws Exception {
+        file = files.newFile();
+        reader = new AsyncFileReader();
+        subscriber = new AsyncAssertionSubscriber(file.toPath());
+        preparedChunks = new ArrayList<>();
+    }
+
+    @Test
+    public void readsWholeFile() throws Exception {
+        addDataForRead(chunk4KB(), chunk4KB(), chunk4KB());
+        subscriber.request = MAX_VALUE;
+        reader.subscribe(subscriber);
+
+        assertThat(subscriber.awaitTermination()).isTrue();
+        assertThat(subscriber.items).hasSize(3);
+        assertThat(subscriber.items).containsExactlyElementsOf(preparedChunks);
+    }
+
+    @Test
+    public void readsOnlyRequestedBytes() throws Exception {
+        addDataForRead(chunk4KB(), chunk4KB(), chunk4KB());
+        subscriber.request = 4096;
+        reader.subscribe(subscriber);
+
+        assertThat(subscriber.awaitTermination()).isFalse();
+        assertThat(subscriber.items).hasSize(1);
+
+        subscriber.request = 2 * 4096;
+        subscriber.doRequest();
+
+        assertThat(subscriber.awaitTermination()).isTrue();
+        assertThat(subscriber.items).containsExactlyElementsOf(preparedChunks);
+    }
+
+    @Test
+    public void supportsRequestsFromOnNext() throws Exception {
+        addDataForRead(chunk4KB(), chunk4KB(), chunk4KB());
+        subscriber.request = 4096;
+        subscriber.inclusion = subscriber::doRequest;
+        reader.subscribe(subscriber);
+
+        assertThat(subscriber.awaitTermination()).isTrue();
+        assertThat(subscriber.items).containsExactlyElementsOf(preparedChunks);
+    }
+
+    @Test
+    public void supportsCancellation() throws Exception {
+        addDataForRead(chunk4KB(), chunk4KB(), chunk4KB());
+        subscriber.request = MAX_VALUE;
+        subscriber.inclusion = subscriber::unsubscribe;
+        reader.subscribe(subscriber);
+
+        assertThat(subscriber.awaitTermination()).isFalse();
+        assertThat(subscriber.items).hasSize(1);
+    }
+
+    @Test
+    public void failsOnWrongResources() throws Exception {
+        file.delete();
+        subscriber.request = MAX_VALUE;
+        reader.subscribe(subscriber.asExpected(NoSuchFileException.class));
+
+        assertThat(subscriber.awaitTermination()).isTrue();
+        assertThat(subscriber.isFailed()).isTrue();
+    }
+
+    @Test
+    public void failsOnExcessiveRequests() throws Exception {
+        addDataForRead(chunk4KB());
+        subscriber.request = 2 * 4096;
+        reader.subscribe(subscriber.asExpected(IllegalArgumentException.class));
+
+        assertThat(subscriber.awaitTermination()).isTrue();
+        assertThat(subscriber.isFailed()).isTrue();
+    }
+
+    @Test
+    public void failsOnTruncatedFile() throws Exception {
+        addDataForRead(chunk4KB(), chunk4KB(), chunk4KB());
+        subscriber.request = 4096;
+        reader.subscribe(subscriber.asExpected(EOFException.class));
+
+        assertThat(subscriber.awaitTermination()).isFalse();
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), WRITE)) {
+            channel.truncate(4096);
+        }
+        subscriber.request = 2 * 4096;
+        subscriber.doRequest();
+
+        assertThat(subscriber.awaitTermination()).isTrue();
+        assertThat(subscriber.isFailed()).isTrue();
+        assertThat(subscriber.items).hasSize(1);
+    }
+
+    @Test
+    public void failsOnMapping() throws Exception {
+        subscriber.request = MAX_VALUE;
+        subscriber.mapping = true;
+        reader.subscribe(subscriber.asExpected(IllegalStateException.class));
+
+        assertThat(subscriber.awaitTermination()).isTrue();
+        assertThat(subscriber.isFailed()).isTrue();
+    }
+
+    @Test
+    public void completesEmptyFile() throws Exception {
+        subscriber.request = MAX_VALUE;
+        reader.subscribe(subscriber);
+
+        assertThat(subscriber.awaitTermination()).isTrue();
+        assertThat(subscriber.items).isEmpty();
+    }
+
+    @Test
+    public void failsOnRequestsOfEmptyFile() throws Exception {
+        subscriber.request = 1;
+        reader.subscribe(subscriber.asExpected(IllegalArgumentException.class));
+
+        assertThat(subscriber.awaitTermination()).isTrue();
+        assertThat(subscriber.isFailed()).isTrue();
+        assertThat(subscriber.items).isEmpty();
+    }
+
+    @After
+    public void tearDown() {
+        subscriber.validate();
+    }
+
+    byte[] chunk4KB() {
+        final byte[] bytes = new byte[4096];
+        new Random().nextBytes(bytes);
+
+        preparedChunks.add(bytes);
+        return bytes;
+    }
+
+    void addDataForRead(byte[]... chunks) throws Exception {
+        for (byte[] chunk : chunks) {
+            write(file.toPath(), chunk, APPEND);
+        }
+    }
+
+    static class AsyncAssertionSubscriber extends BaseAssertionSubscriber<ByteBuffer, byte[]> {
+
+        Path path;
+        boolean mapping;
+        Runnable inclusion;
+        CountDownLatch terminated = new CountDownLatch(1);
+
+        private AsyncAssertionSubscriber(Path path) {
+            this.path = path;
+        }
+
+        boolean awaitTermination() throws InterruptedException {
+            return terminated.await(300, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription s) {
+            super.onSubscribe(s);
+
+            ((FileReader.ReadSubscription) s).setPath(path);
+            ((FileReader.ReadSubscription) s).setAllocator(new LineReader.MemoryAllocator());
+            if (mapping) ((FileReader.ReadSubscription) s).setMapping(4096);
+            doRequest();
+        }
+
+        @Override
+        public void onNext(ByteBuffer b) {
+            super.onNext(b);
+
+            items.add(allocate(b.remaining()).put(b).array());
+            b.mark();
+            if (inclusion != null) inclusion.run();
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            super.onError(error);
+            terminated.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            super.onComplete();
+            terminated.countDown();
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2018 Alexey Zhytnik
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zhytnik.reactive.io;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * @author Alexey Zhytnik
+ */
+public class BufferPoolTest {
+
+    AtomicLong time = new AtomicLong();
+    BufferPool pool = new BufferPool(2, 100, time::get);
+
+    @Test
+    public void allocatesByCapacityClasses() {
+        assertThat(pool.acquire(1, false).capacity()).isEqualTo(1);
+        assertThat(pool.acquire(4096, false).capacity()).isEqualTo(4096);
+        assertThat(pool.acquire(4097, false).capacity()).isEqualTo(8192);
+        assertThat(pool.acquire(100, true).isDirect()).isTrue();
+    }
+
+    @Test
+    public void reusesReleasedBuffers() {
+        final ByteBuffer buffer = pool.acquire(3000, false);
+        buffer.position(7).limit(9);
+
+        pool.release(buffer);
+
+        final ByteBuffer reused = pool.acquire(4096, false);
+
+        assertThat(reused).isSameAs(buffer);
+        assertThat(reused.position()).isEqualTo(0);
+        assertThat(reused.limit()).isEqualTo(4096);
+        assertThat(pool.retained()).isEqualTo(0);
+    }
+
+    @Test
+    public void separatesHeapAndDirectBuffers() {
+        pool.release(pool.acquire(64, true));
+
+        assertThat(pool.acquire(64, false).isDirect()).isFalse();
+        assertThat(pool.acquire(64, true).isDirect()).isTrue();
+    }
+
+    @Test
+    public void boundsRetention() {
+        pool.release(ByteBuffer.allocate(16));
+        pool.release(ByteBuffer.allocate(16));
+        pool.release(ByteBuffer.allocate(16));
+        pool.release(ByteBuffer.allocate(32));
+
+        assertThat(pool.retained()).isEqualTo(3);
+    }
+
+    @Test
+    public void dropsForeignBuffers() {
+        pool.release(ByteBuffer.allocate(100));
+        pool.release(ByteBuffer.allocate(64).asReadOnlyBuffer());
+        pool.release(ByteBuffer.allocate(32 * 1024 * 1024));
+
+        assertThat(pool.retained()).isEqualTo(0);
+    }
+
+    @Test
+    public void evictsIdleBuffers() {
+        final ByteBuffer old = ByteBuffer.allocate(16);
+        final ByteBuffer recent = ByteBuffer.allocate(16);
+
+        pool.release(old);
+        time.set(60);
+        pool.release(recent);
+        time.set(130);
+
+        pool.release(ByteBuffer.allocate(32));
+        assertThat(pool.retained()).isEqualTo(3);
+
+        assertThat(pool.acquire(16, false)).isSameAs(recent);
+        assertThat(pool.retained()).isEqualTo(1);
+
+        time.set(231);
+        pool.release(ByteBuffer.allocate(32));
+        assertThat(pool.retained()).isEqualTo(1);
+    }
+
+    @Test
+    public void checksArguments() {
+        assertThatThrownBy(() -> pool.acquire(0, false)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new BufferPool(-1, 1, TimeUnit.SECONDS)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void isSharedByThreads() {
+        pool = new BufferPool(4, 1, TimeUnit.MINUTES);
+
+        final List<CompletableFuture<Void>> tasks = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            tasks.add(CompletableFuture.runAsync(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    final ByteBuffer buffer = pool.acquire(512, false);
+                    buffer.putInt(0, i);
+                    assertThat(buffer.getInt(0)).isEqualTo(i);
+                    pool.release(buffer);
+                }
+            }));
+        }
+        tasks.forEach(CompletableFuture::join);
+
+        assertThat(pool.retained()).isBetween(1, 4);
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright 2018 Alexey Zhytnik
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zhytnik.reactive.io;
+
+import com.zhytnik.reactive.io.CsvReader.Row;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.file.NoSuchFileException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Flow.Subscription;
+
+import static java.lang.Long.MAX_VALUE;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.Files.write;
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * @author Alexey Zhytnik
+ */
+public class CsvReaderTest {
+
+    @ClassRule
+    public static TemporaryFolder files = new TemporaryFolder();
+
+    File file;
+    CsvReader reader;
+    RowAssertionSubscriber subscriber;
+
+    @Before
+    public void setUp() throws Exception {
+        file = files.newFile();
+        reader = new CsvReader(file.toPath());
+        subscriber = new RowAssertionSubscriber();
+        subscriber.request = MAX_VALUE;
+    }
+
+    @Test
+    public void readsFieldsOfRows() throws Exception {
+        write(file.toPath(), "a,b,c\n1,,3\r\n\r\n\"x,y\",\"say \"\"hi\"\"\",\"multi\r\nline\"\nlast,".getBytes(UTF_8));
+
+        reader.subscribe(subscriber);
+
+        assertThat(subscriber.items).containsExactly(
+                asList("a", "b", "c"),
+                asList("1", "", "3"),
+                asList(""),
+                asList("x,y", "say \"\"hi\"\"", "multi\r\nline"),
+                asList("last", "")
+        );
+        assertThat(subscriber.quoted).containsExactly(false, false, false, false, false, false, false, true, true, true, false, false);
+    }
+
+    @Test
+    public void readsRowsWhichAreDividedBetweenReads() throws Exception {
+        write(file.toPath(), "\"a\"\"\",\"\"\"b\"\r\n\"\"\"\",c\r\n\"\"\n\"d\"".getBytes(UTF_8));
+
+        for (int page = 1; page < 16; page++) {
+            final LineReader lines = (page < 8)
+                    ? LineReader.builder(file.toPath()).pageSize(page).generalMemorySize(2 * page).build()
+                    : LineReader.builder(file.toPath()).mapping(page - 7).build();
+
+            reader = CsvReader.builder(lines).build();
+            subscriber = new RowAssertionSubscriber();
+            subscriber.request = MAX_VALUE;
+
+            reader.subscribe(subscriber);
+
+            assertThat(subscriber.items).containsExactly(
+                    asList("a\"\"", "\"\"b"),
+                    asList("\"\"", "c"),
+                    asList(""),
+                    asList("d")
+            );
+        }
+    }
+
+    @Test
+    public void projectsColumns() throws Exception {
+        write(file.toPath(), "a,b,c,d\n1,2\n".getBytes(UTF_8));
+
+        reader = CsvReader.builder(new LineReader(file.toPath())).columns(2, 0).build();
+        reader.subscribe(subscriber);
+
+        assertThat(subscriber.items).containsExactly(asList("c", "a"), asList(null, "1"));
+    }
+
+    @Test
+    public void readsTabSeparatedValues() throws Exception {
+        write(file.toPath(), "\"a\tb\"\tc\n".getBytes(UTF_8));
+
+        reader = CsvReader.builder(new LineReader(file.toPath())).tsv().build();
+        reader.subscribe(subscriber);
+
+        assertThat(subscriber.items).containsExactly(asList("\"a", "b\"", "c"));
+    }
+
+    @Test
+    public void skipsRows() throws Exception {
+        write(file.toPath(), "id,\"multi\nline header\"\n1,2\n3,4".getBytes(UTF_8));
+
+        reader = CsvReader.builder(LineReader.builder(file.toPath()).fromLine(1).build()).build();
+        reader.subscribe(subscriber);
+
+        assertThat(subscriber.items).containsExactly(asList("1", "2"), asList("3", "4"));
+    }
+
+    @Test
+    public void readsOnlyRequestedRows() throws Exception {
+        write(file.toPath(), "1\n2\n3".getBytes(UTF_8));
+
+        subscriber.request = 2;
+        reader.subscribe(subscriber);
+
+        assertThat(subscriber.items).containsExactly(asList("1"), asList("2"));
+    }
+
+    @Test
+    public void failsOnNotZeroRemainingRows() throws Exception {
+        write(file.toPath(), "1\n2\n".getBytes(UTF_8));
+
+        subscriber.request = 3;
+        reader.subscribe(subscriber.asExpected(LineReader.NoSuchLineCountException.class));
+
+        assertThat(subscriber.items).hasSize(2);
+        assertThat(subscriber.isFailed()).isTrue();
+    }
+
+    @Test
+    public void processesInternalErrors() {
+        file.delete();
+        reader.subscribe(subscriber.asExpected(NoSuchFileException.class));
+
+        assertThat(subscriber.isFailed()).isTrue();
+    }
+
+    @Test
+    public void checksSettings() {
+        final LineReader lines = new LineReader(file.toPath());
+
+        assertThatThrownBy(() -> CsvReader.builder(lines).separator((byte) '\n'))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> CsvReader.builder(lines).quote((byte) ',').build())
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> CsvReader.builder(lines).columns(1, -1))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> CsvReader.builder(lines).columns(1, 1))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> CsvReader.builder(LineReader.builder(file.toPath()).range(1, 2).build()).build())
+                .isInstanceOf(IllegalArgumentException.class);
+
+        reader.subscribe(subscriber);
+    }
+
+    @After
+    public void validate() {
+        subscriber.validate();
+    }
+
+    static class RowAssertionSubscriber extends BaseAssertionSubscriber<Row, List<String>> {
+
+        List<Boolean> quoted = new ArrayList<>();
+
+        @Override
+        public void onSubscribe(Subscription s) {
+            super.onSubscribe(s);
+            doRequest();
+        }
+
+        @Override
+        public void onNext(Row row) {
+            super.onNext(row);
+
+            final List<String> fields = new ArrayList<>();
+            final ByteBuffer buffer = row.buffer().duplicate();
+
+            for (int i = 0; i < row.size(); i++) {
+                if (row.start(i) < 0) {
+                    fields.add(null);
+                    continue;
+                }
+                assertThat(row.start(i)).isBetween(row.buffer().position(), row.buffer().limit());
+                assertThat(row.end(i)).isBetween(row.start(i), row.buffer().limit());
+
+                buffer.limit(row.end(i)).position(row.start(i));
+                fields.add(UTF_8.decode(buffer).toString());
+                buffer.limit(buffer.capacity());
+                quoted.add(row.quoted(i));
+            }
+            items.add(fields);
+        }
+    }
+}
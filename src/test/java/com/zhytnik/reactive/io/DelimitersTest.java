@@ -0,0 +1,59 @@
+/*
+ * Copyright 2018 Alexey Zhytnik
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zhytnik.reactive.io;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Alexey Zhytnik
+ */
+public class DelimitersTest {
+
+    @Test
+    public void findsBytesAtAnyPosition() {
+        for (ByteOrder order : new ByteOrder[]{ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN}) {
+            final ByteBuffer chunk = ByteBuffer.allocate(27).order(order);
+
+            for (int b = Byte.MIN_VALUE; b <= Byte.MAX_VALUE; b++) {
+                for (int i = 0; i < chunk.capacity(); i++) {
+                    Arrays.fill(chunk.array(), (byte) (b + 1));
+                    chunk.put(i, (byte) b);
+
+                    assertThat(Delimiters.indexOf(chunk, (byte) b, 0, 27)).isEqualTo(i);
+                    assertThat(Delimiters.indexOf(chunk, (byte) b, i + 1, 27)).isEqualTo(27);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void findsOnlyWholeDelimiters() {
+        final ByteBuffer chunk = ByteBuffer.wrap("ab-a-b--ab--".getBytes());
+        final byte[] delimiter = "--".getBytes();
+
+        assertThat(Delimiters.indexOf(chunk, delimiter, 0, 12)).isEqualTo(6);
+        assertThat(Delimiters.indexOf(chunk, delimiter, 7, 12)).isEqualTo(10);
+        assertThat(Delimiters.indexOf(chunk, delimiter, 0, 7)).isEqualTo(7);
+        assertThat(Delimiters.indexOf(chunk, delimiter, 11, 12)).isEqualTo(12);
+        assertThat(Delimiters.indexOf(chunk, delimiter, 12, 12)).isEqualTo(12);
+    }
+}
@@ -33,6 +33,7 @@ import java.util.function.Supplier;
 
 import static java.lang.Long.MAX_VALUE;
 import static java.nio.ByteBuffer.allocate;
+import static java.util.Arrays.copyOfRange;
 import static java.nio.file.Files.write;
 import static java.nio.file.StandardOpenOption.APPEND;
 import static org.assertj.core.api.Assertions.assertThat;
@@ -117,6 +118,23 @@ public class FileReaderTest {
         assertThat(preparedChunks.get(1)).isEqualTo(subscriber.items.get(1));
     }
 
+    @Test
+    public void acceptsRequestsAfterOnNextReturned() throws Exception {
+        addDataForRead(chunk4KB(), chunk4KB(), chunk4KB());
+
+        final Thread reading = Thread.currentThread();
+
+        subscriber.awaiting = true;
+        subscriber.request = 4096;
+        subscriber.inclusion = () -> {
+            if (subscriber.items.size() < 3) LineReaderTest.whenWaiting(reading, subscriber::doRequest);
+        };
+        reader.subscribe(subscriber);
+
+        assertThat(subscriber.items).hasSize(3);
+        assertThat(preparedChunks.get(2)).isEqualTo(subscriber.items.get(2));
+    }
+
     @Test
     public void doesNotTouchBytesBeforeReadPosition() throws Exception {
         addDataForRead(chunk4KB(), chunk4KB());
@@ -163,6 +181,73 @@ public class FileReaderTest {
         assertThat(subscriber.items).hasSize(1);
     }
 
+    @Test
+    public void readsByMappedWindows() throws Exception {
+        addDataForRead(chunk4KB(), chunk4KB(), chunk4KB());
+        subscriber.allocator = null;
+        subscriber.mapping = 4096;
+        subscriber.request = MAX_VALUE;
+        reader.subscribe(subscriber);
+
+        assertThat(subscriber.items).hasSize(3);
+        assertThat(preparedChunks.get(0)).isEqualTo(subscriber.items.get(0));
+        assertThat(preparedChunks.get(1)).isEqualTo(subscriber.items.get(1));
+        assertThat(preparedChunks.get(2)).isEqualTo(subscriber.items.get(2));
+    }
+
+    @Test
+    public void keepsMarkedBytesInNextMappedWindow() throws Exception {
+        addDataForRead(chunk4KB(), chunk4KB());
+        subscriber.allocator = null;
+        subscriber.mapping = 4096;
+        subscriber.retained = 10;
+        subscriber.request = MAX_VALUE;
+        reader.subscribe(subscriber);
+
+        final byte[] first = preparedChunks.get(0);
+        final byte[] last = subscriber.items.get(1);
+
+        assertThat(subscriber.items).hasSize(2);
+        assertThat(last).hasSize(4096);
+        assertThat(subscriber.marked).isEqualTo(copyOfRange(first, 4096 - 10, 4096));
+        assertThat(last).isEqualTo(preparedChunks.get(1));
+    }
+
+    @Test
+    public void failsOnNegativeMapping() {
+        subscriber.mapping = -1;
+        reader.subscribe(subscriber.asExpected(IllegalArgumentException.class));
+
+        assertThat(subscriber.isFailed()).isTrue();
+    }
+
+    @Test
+    public void readsRange() throws Exception {
+        addDataForRead(chunk4KB(), chunk4KB(), chunk4KB());
+        subscriber.from = 4096 + 100;
+        subscriber.to = 2 * 4096 + 100;
+        subscriber.request = MAX_VALUE;
+        reader.subscribe(subscriber);
+
+        final byte[] expected = new byte[4096];
+        System.arraycopy(preparedChunks.get(1), 100, expected, 0, 4096 - 100);
+        System.arraycopy(preparedChunks.get(2), 0, expected, 4096 - 100, 100);
+
+        final ByteBuffer actual = allocate(4096);
+        subscriber.items.forEach(actual::put);
+
+        assertThat(actual.array()).isEqualTo(expected);
+    }
+
+    @Test
+    public void failsOnWrongRange() {
+        subscriber.from = 10;
+        subscriber.to = 5;
+        reader.subscribe(subscriber.asExpected(IllegalArgumentException.class));
+
+        assertThat(subscriber.isFailed()).isTrue();
+    }
+
     @After
     public void tearDown() {
         if (file.exists() && !file.delete()) {
@@ -188,10 +273,16 @@ public class FileReaderTest {
     static class ReadAssertionSubscriber extends BaseAssertionSubscriber<ByteBuffer, byte[]> {
 
         Path path;
+        long from;
+        long to = MAX_VALUE;
+        int mapping;
+        int retained;
+        boolean awaiting;
+        byte[] marked;
         Runnable inclusion;
         Supplier<ByteBuffer> allocator = new LineReader.MemoryAllocator();
 
-        private ReadAssertionSubscriber(Path path) {
+        ReadAssertionSubscriber(Path path) {
             this.path = path;
         }
 
@@ -201,6 +292,9 @@ public class FileReaderTest {
 
             ((FileReader.ReadSubscription) s).setPath(path);
             ((FileReader.ReadSubscription) s).setAllocator(allocator);
+            ((FileReader.ReadSubscription) s).setRange(from, to);
+            if (mapping != 0) ((FileReader.ReadSubscription) s).setMapping(mapping);
+            if (awaiting) ((FileReader.ReadSubscription) s).setAwaiting(true);
             doRequest();
         }
 
@@ -209,7 +303,13 @@ public class FileReaderTest {
             super.onNext(b);
 
             assertThat(b).isNotNull();
+            if (mapping != 0) {
+                final ByteBuffer previous = b.duplicate();
+                previous.limit(previous.position()).reset();
+                marked = allocate(previous.remaining()).put(previous).array();
+            }
             items.add(allocate(b.limit() - b.position()).put(b).array());
+            if (mapping != 0) b.position(b.limit() - retained).mark().position(b.limit());
             if (inclusion != null) inclusion.run();
         }
     }
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2018 Alexey Zhytnik
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zhytnik.reactive.io;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.Flow.Subscription;
+
+import static java.lang.Long.MAX_VALUE;
+import static java.nio.file.Files.write;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * @author Alexey Zhytnik
+ */
+public class FileTransferTest {
+
+    @ClassRule
+    public static TemporaryFolder files = new TemporaryFolder();
+
+    Path file;
+    byte[] content;
+    ByteArrayOutputStream target;
+    TransferSubscriber subscriber;
+
+    @Before
+    public void setUp() throws Exception {
+        file = files.newFile().toPath();
+        content = new byte[20 * 1024 * 1024 + 17];
+        new Random(3).nextBytes(content);
+        write(file, content);
+
+        target = new ByteArrayOutputStream();
+        subscriber = new TransferSubscriber();
+        subscriber.request = MAX_VALUE;
+    }
+
+    @Test
+    public void transfersFileToChannel() throws Exception {
+        final Path copy = files.newFile().toPath();
+
+        try (FileChannel channel = FileChannel.open(copy, WRITE)) {
+            new FileTransfer(file, channel).subscribe(subscriber);
+        }
+        assertThat(Files.readAllBytes(copy)).isEqualTo(content);
+        assertThat(subscriber.items).hasSize(3).allSatisfy(step -> assertThat(step).isLessThanOrEqualTo(8 * 1024 * 1024));
+        assertThat(subscriber.items.stream().mapToLong(Long::longValue).sum()).isEqualTo(content.length);
+    }
+
+    @Test
+    public void transfersRequestedBytes() {
+        subscriber.request = 1000;
+        new FileTransfer(file, Channels.newChannel(target)).subscribe(subscriber);
+
+        assertThat(target.toByteArray()).isEqualTo(Arrays.copyOf(content, 1000));
+        assertThat(subscriber.items).containsExactly(1000L);
+    }
+
+    @Test
+    public void transfersRange() {
+        new FileTransfer(file, 100, 5000, Channels.newChannel(target)).subscribe(subscriber);
+
+        assertThat(target.toByteArray()).isEqualTo(Arrays.copyOfRange(content, 100, 5000));
+    }
+
+    @Test
+    public void truncatesRangeToFileSize() {
+        new FileTransfer(file, content.length - 10, MAX_VALUE, Channels.newChannel(target)).subscribe(subscriber);
+
+        assertThat(target.toByteArray()).isEqualTo(Arrays.copyOfRange(content, content.length - 10, content.length));
+    }
+
+    @Test
+    public void supportsCancellationInRuntime() {
+        subscriber.cancel = true;
+        new FileTransfer(file, Channels.newChannel(target)).subscribe(subscriber);
+
+        assertThat(subscriber.items).hasSize(1);
+        assertThat(target.size()).isEqualTo(8 * 1024 * 1024);
+    }
+
+    @Test
+    public void requestsShouldNotBeMoreThanFileLength() {
+        subscriber.request = content.length + 1;
+        new FileTransfer(file, Channels.newChannel(target)).subscribe(subscriber.asExpected(IllegalArgumentException.class));
+
+        assertThat(subscriber.isFailed()).isTrue();
+        assertThat(target.size()).isZero();
+    }
+
+    @Test
+    public void failsOnNegativeRequests() {
+        subscriber.request = -1;
+        new FileTransfer(file, Channels.newChannel(target)).subscribe(subscriber.asExpected(IllegalArgumentException.class));
+
+        assertThat(subscriber.isFailed()).isTrue();
+    }
+
+    @Test
+    public void failsOnWrongResources() throws Exception {
+        Files.delete(file);
+        new FileTransfer(file, Channels.newChannel(target)).subscribe(subscriber.asExpected(NoSuchFileException.class));
+
+        assertThat(subscriber.isFailed()).isTrue();
+    }
+
+    @Test
+    public void checksRange() {
+        assertThatThrownBy(() -> new FileTransfer(file, 5, 4, Channels.newChannel(target)))
+                .isInstanceOf(IllegalArgumentException.class);
+
+        subscriber.request = 0;
+        new FileTransfer(file, Channels.newChannel(target)).subscribe(subscriber);
+    }
+
+    @After
+    public void tearDown() {
+        subscriber.validate();
+    }
+
+    static class TransferSubscriber extends BaseAssertionSubscriber<Long, Long> {
+
+        boolean cancel;
+
+        @Override
+        public void onSubscribe(Subscription s) {
+            super.onSubscribe(s);
+            doRequest();
+        }
+
+        @Override
+        public void onNext(Long bytes) {
+            super.onNext(bytes);
+            items.add(bytes);
+
+            if (cancel) unsubscribe();
+        }
+    }
+}
@@ -0,0 +1,242 @@
+/*
+ * Copyright 2018 Alexey Zhytnik
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zhytnik.reactive.io;
+
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Flow.Subscription;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * @author Alexey Zhytnik
+ */
+public class FileWriterTest {
+
+    @ClassRule
+    public static TemporaryFolder files = new TemporaryFolder();
+
+    Path file;
+
+    @Before
+    public void setUp() throws Exception {
+        file = files.newFile().toPath();
+    }
+
+    @Test
+    public void writesLinesOfLineReader() throws Exception {
+        final Path source = files.newFile().toPath();
+        final String text = IntStream.range(0, 100_000)
+                .mapToObj(i -> "line " + i + "\n")
+                .collect(Collectors.joining());
+        Files.write(source, text.getBytes(UTF_8));
+
+        final FileWriter writer = FileWriter.builder(file).separator((byte) '\n').build();
+        new LineReader(source).subscribe(writer);
+
+        assertThat(writer.result().get()).isEqualTo(text.length());
+        assertThat(new String(Files.readAllBytes(file), UTF_8)).isEqualTo(text);
+    }
+
+    @Test
+    public void writesLinesOfLineReaderByPortions() throws Exception {
+        final Path source = files.newFile().toPath();
+        Files.write(source, "a\nb\nc\nd\ne".getBytes(UTF_8));
+
+        final FileWriter writer = FileWriter.builder(file).demand(2).separator((byte) ';').build();
+        new LineReader(source).subscribe(writer);
+
+        assertThat(writer.result().get()).isEqualTo(10);
+        assertThat(new String(Files.readAllBytes(file), UTF_8)).isEqualTo("a;b;c;d;e;");
+    }
+
+    @Test
+    public void writesBuffersWhichDoNotFitMemory() throws Exception {
+        final FileWriter writer = FileWriter.builder(file).bufferSize(4).separator((byte) ',').build();
+
+        send(writer, "a", "bcdefgh", "ij", "klmnopqrst", "u");
+
+        assertThat(writer.result().get()).isEqualTo(26);
+        assertThat(new String(Files.readAllBytes(file), UTF_8)).isEqualTo("a,bcdefgh,ij,klmnopqrst,u,");
+    }
+
+    @Test
+    public void doesNotChangeBuffers() throws Exception {
+        final FileWriter writer = FileWriter.builder(file).bufferSize(4).build();
+        final ByteBuffer small = ByteBuffer.wrap("ab".getBytes(UTF_8));
+        final ByteBuffer big = ByteBuffer.wrap("cdefgh".getBytes(UTF_8));
+
+        final ManualSubscription subscription = new ManualSubscription();
+        writer.onSubscribe(subscription);
+        writer.onNext(small);
+        writer.onNext(big);
+        writer.onComplete();
+
+        assertThat(small.position()).isEqualTo(0);
+        assertThat(big.position()).isEqualTo(0);
+        assertThat(new String(Files.readAllBytes(file), UTF_8)).isEqualTo("abcdefgh");
+    }
+
+    @Test
+    public void replacesContent() throws Exception {
+        Files.write(file, "old content".getBytes(UTF_8));
+
+        send(new FileWriter(file), "new");
+
+        assertThat(new String(Files.readAllBytes(file), UTF_8)).isEqualTo("new");
+    }
+
+    @Test
+    public void appendsContent() throws Exception {
+        Files.write(file, "old".getBytes(UTF_8));
+
+        send(FileWriter.builder(file).append().build(), "new");
+
+        assertThat(new String(Files.readAllBytes(file), UTF_8)).isEqualTo("oldnew");
+    }
+
+    @Test
+    public void requestsNextBuffersAfterWrite() throws Exception {
+        final FileWriter writer = FileWriter.builder(file).demand(2).build();
+        final ManualSubscription subscription = new ManualSubscription();
+
+        writer.onSubscribe(subscription);
+        assertThat(subscription.requests).containsExactly(2L);
+
+        writer.onNext(ByteBuffer.wrap("ab".getBytes(UTF_8)));
+        assertThat(subscription.requests).containsExactly(2L);
+        assertThat(Files.size(file)).isZero();
+
+        writer.onNext(ByteBuffer.wrap("cd".getBytes(UTF_8)));
+        assertThat(subscription.requests).containsExactly(2L, 2L);
+        assertThat(Files.size(file)).isEqualTo(4);
+
+        writer.onComplete();
+        assertThat(writer.result().get()).isEqualTo(4);
+    }
+
+    @Test
+    public void writesBuffersOfAsynchronousPublisher() throws Exception {
+        final FileWriter writer = FileWriter.builder(file).demand(3).syncEvery(10).build();
+
+        try (SubmissionPublisher<ByteBuffer> publisher = new SubmissionPublisher<>()) {
+            publisher.subscribe(writer);
+
+            for (int i = 0; i < 1000; i++) {
+                publisher.submit(ByteBuffer.wrap((i + ";").getBytes(UTF_8)));
+            }
+        }
+        writer.result().get(10, TimeUnit.SECONDS);
+
+        final String expected = IntStream.range(0, 1000).mapToObj(i -> i + ";").collect(Collectors.joining());
+        assertThat(new String(Files.readAllBytes(file), UTF_8)).isEqualTo(expected);
+    }
+
+    @Test
+    public void syncsFileOnComplete() throws Exception {
+        final FileWriter writer = FileWriter.builder(file).syncOnComplete().build();
+
+        send(writer, "a", "b");
+
+        assertThat(writer.result().get()).isEqualTo(2);
+    }
+
+    @Test
+    public void failsOnErrorOfPublisher() throws Exception {
+        final FileWriter writer = new FileWriter(file);
+        final IllegalStateException error = new IllegalStateException();
+
+        writer.onSubscribe(new ManualSubscription());
+        writer.onNext(ByteBuffer.wrap("ab".getBytes(UTF_8)));
+        writer.onError(error);
+
+        assertThatThrownBy(() -> writer.result().get()).hasCause(error);
+        assertThat(new String(Files.readAllBytes(file), UTF_8)).isEqualTo("ab");
+    }
+
+    @Test
+    public void failsOnShortReadOfOtherPortion() throws Exception {
+        final FileWriter writer = FileWriter.builder(file).demand(3).build();
+        final LineReader.NoSuchLineCountException error = new LineReader.NoSuchLineCountException(3);
+
+        writer.onSubscribe(new ManualSubscription());
+        writer.onNext(ByteBuffer.wrap("ab".getBytes(UTF_8)));
+        writer.onError(error);
+
+        assertThatThrownBy(() -> writer.result().get()).hasCause(error);
+        assertThat(new String(Files.readAllBytes(file), UTF_8)).isEqualTo("ab");
+    }
+
+    @Test
+    public void cancelsOnFailedOpening() {
+        final FileWriter writer = new FileWriter(file.resolve("absent").resolve("file"));
+        final ManualSubscription subscription = new ManualSubscription();
+
+        writer.onSubscribe(subscription);
+
+        assertThat(subscription.cancelled).isTrue();
+        assertThat(subscription.requests).isEmpty();
+        assertThatThrownBy(() -> writer.result().get()).hasCauseInstanceOf(IOException.class);
+    }
+
+    @Test
+    public void checksSettings() {
+        assertThatThrownBy(() -> FileWriter.builder(file).demand(0)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> FileWriter.builder(file).syncEvery(0)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> FileWriter.builder(file).bufferSize(2).separator(new byte[2]).build())
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    static void send(FileWriter writer, String... items) {
+        writer.onSubscribe(new ManualSubscription());
+
+        for (String item : items) {
+            writer.onNext(ByteBuffer.wrap(item.getBytes(UTF_8)));
+        }
+        writer.onComplete();
+    }
+
+    static class ManualSubscription implements Subscription {
+
+        final List<Long> requests = new ArrayList<>();
+        boolean cancelled;
+
+        @Override
+        public void request(long n) {
+            requests.add(n);
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+    }
+}
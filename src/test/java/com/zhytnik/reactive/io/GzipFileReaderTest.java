@@ -0,0 +1,237 @@
+/*
+ * Copyright 2018 Alexey Zhytnik
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zhytnik.reactive.io;
+
+import com.zhytnik.reactive.io.FileReaderTest.ReadAssertionSubscriber;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipException;
+
+import static com.zhytnik.reactive.io.ReverseLineReaderTest.read;
+import static java.lang.Long.MAX_VALUE;
+import static java.nio.file.Files.write;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * @author Alexey Zhytnik
+ */
+public class GzipFileReaderTest {
+
+    @ClassRule
+    public static TemporaryFolder files = new TemporaryFolder();
+
+    Path file;
+    byte[] content;
+    GzipFileReader reader;
+    ReadAssertionSubscriber subscriber;
+
+    @Before
+    public void setUp() throws Exception {
+        file = files.newFile().toPath();
+        content = text(100_000, 5);
+        reader = new GzipFileReader();
+        subscriber = new ReadAssertionSubscriber(file);
+        subscriber.allocator = () -> ByteBuffer.allocate(4096);
+        subscriber.request = MAX_VALUE;
+    }
+
+    @Test
+    public void readsDecompressedContent() throws Exception {
+        write(file, gzip(content));
+        reader.subscribe(subscriber);
+
+        assertThat(bytes()).isEqualTo(content);
+    }
+
+    @Test
+    public void readsIntoDirectMemory() throws Exception {
+        write(file, gzip(content));
+        subscriber.allocator = () -> ByteBuffer.allocateDirect(1000);
+        reader.subscribe(subscriber);
+
+        assertThat(bytes()).isEqualTo(content);
+    }
+
+    @Test
+    public void readsConcatenatedMembers() throws Exception {
+        final byte[] next = text(5000, 3);
+        write(file, concat(gzip(content), gzip(new byte[0]), withOptionalHeaderFields(gzip(next))));
+        reader.subscribe(subscriber);
+
+        assertThat(bytes()).isEqualTo(concat(content, next));
+    }
+
+    @Test
+    public void readsRequestedBytes() throws Exception {
+        write(file, gzip(content));
+        subscriber.request = 10_000;
+        reader.subscribe(subscriber);
+
+        assertThat(bytes()).isEqualTo(Arrays.copyOf(content, 10_000));
+    }
+
+    @Test
+    public void readsRange() throws Exception {
+        write(file, gzip(content));
+        subscriber.from = 50_000;
+        subscriber.to = 60_000;
+        reader.subscribe(subscriber);
+
+        assertThat(bytes()).isEqualTo(Arrays.copyOfRange(content, 50_000, 60_000));
+    }
+
+    @Test
+    public void requestsShouldNotBeMoreThanContent() throws Exception {
+        write(file, gzip(content));
+        subscriber.request = content.length + 1;
+        reader.subscribe(subscriber.asExpected(IllegalArgumentException.class));
+
+        assertThat(subscriber.isFailed()).isTrue();
+    }
+
+    @Test
+    public void failsOnWrongChecksum() throws Exception {
+        final byte[] compressed = gzip(content);
+        compressed[compressed.length - 8] ^= 1;
+        write(file, compressed);
+        reader.subscribe(subscriber.asExpected(ZipException.class));
+
+        assertThat(subscriber.isFailed()).isTrue();
+    }
+
+    @Test
+    public void failsOnTruncatedContent() throws Exception {
+        final byte[] compressed = gzip(content);
+        write(file, Arrays.copyOf(compressed, compressed.length / 2));
+        reader.subscribe(subscriber.asExpected(EOFException.class));
+
+        assertThat(subscriber.isFailed()).isTrue();
+    }
+
+    @Test
+    public void failsOnNotGzipContent() throws Exception {
+        write(file, content);
+        reader.subscribe(subscriber.asExpected(ZipException.class));
+
+        assertThat(subscriber.isFailed()).isTrue();
+    }
+
+    @Test
+    public void doesNotSupportMapping() throws Exception {
+        subscriber.mapping = 4096;
+        reader.subscribe(subscriber.asExpected(IllegalStateException.class));
+
+        assertThat(subscriber.isFailed()).isTrue();
+    }
+
+    @Test
+    public void readsLinesOfGzipFile() throws Exception {
+        final Path plain = files.newFile().toPath();
+        write(plain, content);
+        write(file, gzip(content));
+
+        final LineReader compressed = LineReader.builder(file).gzip().build();
+        final LineReader direct = LineReader.builder(file).gzip().directMemory().pageSize(100).generalMemorySize(1000).build();
+
+        assertThat(read(compressed, MAX_VALUE)).isEqualTo(read(new LineReader(plain), MAX_VALUE));
+        assertThat(read(direct, MAX_VALUE)).isEqualTo(read(new LineReader(plain), MAX_VALUE));
+        assertThat(compressed.statistics().toString()).isEqualTo(new LineReader(plain).statistics().toString());
+
+        assertThat(read(LineReader.builder(file).gzip().fromLine(100).build(), 3))
+                .isEqualTo(read(LineReader.builder(plain).fromLine(100).build(), 3));
+        assertThat(read(LineReader.builder(file).gzip().range(30_000, 40_000).build(), MAX_VALUE))
+                .isEqualTo(read(LineReader.builder(plain).range(30_000, 40_000).build(), MAX_VALUE));
+
+        assertThat(new ParallelLineReader(compressed, 4, new ForkJoinPool(2)).split()).containsExactly(compressed);
+        assertThatThrownBy(() -> LineReader.builder(file).gzip().mapping(4096).build())
+                .isInstanceOf(IllegalArgumentException.class);
+
+        reader.subscribe(subscriber);
+        assertThat(bytes()).isEqualTo(content);
+    }
+
+    @After
+    public void tearDown() {
+        subscriber.validate();
+    }
+
+    byte[] bytes() {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        subscriber.items.forEach(item -> out.write(item, 0, item.length));
+        return out.toByteArray();
+    }
+
+    static byte[] text(int size, int terminators) {
+        final byte[] text = new byte[size];
+        final Random random = new Random(size);
+
+        for (int i = 0; i < text.length; i++) {
+            final int c = random.nextInt(terminators * 10);
+            text[i] = (byte) (c == 0 ? '\r' : c < terminators ? '\n' : 'a' + c % 26);
+        }
+        return text;
+    }
+
+    static byte[] gzip(byte[] content) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(content);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Replaces the header of the member by one with extra field, name, comment and header CRC.
+     */
+    static byte[] withOptionalHeaderFields(byte[] member) {
+        final ByteArrayOutputStream header = new ByteArrayOutputStream();
+        header.write(member, 0, 10);
+        header.write(new byte[]{2, 0, 'B', 'C'}, 0, 4);
+        header.write(new byte[]{'a', '.', 'l', 'o', 'g', 0}, 0, 6);
+        header.write(new byte[]{'c', 0}, 0, 2);
+
+        final byte[] bytes = header.toByteArray();
+        bytes[3] = 4 | 8 | 16 | 2;
+
+        final CRC32 crc = new CRC32();
+        crc.update(bytes);
+        final byte[] checksum = {(byte) crc.getValue(), (byte) (crc.getValue() >>> 8)};
+
+        return concat(bytes, checksum, Arrays.copyOfRange(member, 10, member.length));
+    }
+
+    static byte[] concat(byte[]... parts) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) out.write(part, 0, part.length);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2018 Alexey Zhytnik
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zhytnik.reactive.io;
+
+import com.zhytnik.reactive.io.LineBatchReader.Batch;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.file.NoSuchFileException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Flow.Subscription;
+
+import static java.lang.Long.MAX_VALUE;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.Files.write;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Alexey Zhytnik
+ */
+public class LineBatchReaderTest {
+
+    @ClassRule
+    public static TemporaryFolder files = new TemporaryFolder();
+
+    File file;
+    LineBatchReader reader;
+    BatchAssertionSubscriber subscriber;
+
+    @Before
+    public void setUp() throws Exception {
+        file = files.newFile();
+        reader = new LineBatchReader(file.toPath());
+        subscriber = new BatchAssertionSubscriber();
+    }
+
+    @Test
+    public void readsSameLinesAsLineReader() throws Exception {
+        final byte[] content = new byte[5 * 4096 + 7];
+        final Random random = new Random(3);
+
+        for (int i = 0; i < content.length; i++) {
+            final int c = random.nextInt(10);
+            content[i] = (byte) (c == 0 ? '\r' : c == 1 ? '\n' : 'a' + c);
+        }
+        write(file.toPath(), content);
+
+        final LineReaderTest.ReadAssertionSubscriber expected = new LineReaderTest.ReadAssertionSubscriber();
+        expected.request = MAX_VALUE;
+        new LineReader(file.toPath()).subscribe(expected);
+
+        subscriber.request = MAX_VALUE;
+        reader.subscribe(subscriber);
+
+        assertThat(subscriber.items).isEqualTo(expected.items);
+        assertThat(subscriber.batches).isGreaterThan(1);
+    }
+
+    @Test
+    public void readsOnlyRequestedBatches() throws Exception {
+        final byte[] content = new byte[3 * 4096];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) (i % 8 == 7 ? '\n' : '0');
+        }
+        write(file.toPath(), content);
+
+        subscriber.request = 1;
+        reader.subscribe(subscriber);
+
+        assertThat(subscriber.batches).isEqualTo(1);
+        assertThat(subscriber.items).hasSize(4096 / 8).allMatch("0000000"::equals);
+    }
+
+    @Test
+    public void sendsLastLineInSeparateBatch() throws Exception {
+        write(file.toPath(), new byte[]{'0', '1', '\r', '\n', '4'});
+
+        subscriber.request = MAX_VALUE;
+        reader.subscribe(subscriber);
+
+        assertThat(subscriber.batches).isEqualTo(2);
+        assertThat(subscriber.items).containsExactly("01", "4");
+    }
+
+    @Test
+    public void readsRangeWhichEndsInsideChunk() throws Exception {
+        write(file.toPath(), "ab\ncd\nef\ngh\n".getBytes(UTF_8));
+
+        subscriber.request = MAX_VALUE;
+        new LineBatchReader(LineReader.builder(file.toPath()).range(0, 5).build()).subscribe(subscriber);
+
+        assertThat(subscriber.items).containsExactly("ab", "cd");
+    }
+
+    @Test
+    public void readsRecordsOfRangeWhichEndsInsideChunk() throws Exception {
+        write(file.toPath(), "ab;cd;ef;gh;".getBytes(UTF_8));
+
+        final LineReader records = LineReader.builder(file.toPath()).delimiter((byte) ';').range(0, 5).build();
+        subscriber.request = MAX_VALUE;
+        new LineBatchReader(records).subscribe(subscriber);
+
+        assertThat(subscriber.items).containsExactly("ab", "cd");
+    }
+
+    @Test
+    public void readsEmptyFile() {
+        subscriber.request = MAX_VALUE;
+        reader.subscribe(subscriber);
+
+        assertThat(subscriber.batches).isZero();
+    }
+
+    @Test
+    public void processesInternalErrors() {
+        file.delete();
+        subscriber.request = MAX_VALUE;
+        reader.subscribe(subscriber.asExpected(NoSuchFileException.class));
+
+        assertThat(subscriber.isFailed()).isTrue();
+    }
+
+    @Test
+    public void checksRequests() {
+        subscriber.request = -1;
+        reader.subscribe(subscriber.asExpected(IllegalArgumentException.class));
+
+        assertThat(subscriber.isFailed()).isTrue();
+    }
+
+    @After
+    public void validate() {
+        subscriber.validate();
+    }
+
+    static class BatchAssertionSubscriber extends BaseAssertionSubscriber<Batch, String> {
+
+        int batches;
+        Batch last;
+
+        @Override
+        public void onSubscribe(Subscription s) {
+            super.onSubscribe(s);
+            doRequest();
+        }
+
+        @Override
+        public void onNext(Batch batch) {
+            super.onNext(batch);
+
+            assertThat(batch.size()).isPositive();
+            if (last != null) assertThat(batch).isSameAs(last);
+
+            final ByteBuffer buffer = batch.buffer().duplicate();
+            for (int i = 0; i < batch.size(); i++) {
+                buffer.limit(batch.end(i)).position(batch.start(i));
+                items.add(UTF_8.decode(buffer).toString());
+                buffer.limit(buffer.capacity());
+            }
+            last = batch;
+            batches++;
+        }
+    }
+}
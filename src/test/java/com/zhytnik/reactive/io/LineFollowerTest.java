@@ -0,0 +1,239 @@
+/*
+ * Copyright 2018 Alexey Zhytnik
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zhytnik.reactive.io;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow.Subscriber;
+import java.util.concurrent.Flow.Subscription;
+import java.util.concurrent.TimeUnit;
+
+import static java.lang.Long.MAX_VALUE;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Alexey Zhytnik
+ */
+public class LineFollowerTest {
+
+    @Rule
+    public TemporaryFolder files = new TemporaryFolder();
+
+    Path file;
+    Thread thread;
+    FollowSubscriber subscriber;
+
+    @Before
+    public void setUp() throws Exception {
+        file = files.newFile().toPath();
+        subscriber = new FollowSubscriber();
+    }
+
+    @Test
+    public void sendsAppendedLines() throws Exception {
+        append("0\n1");
+        follow(new LineFollower(LineReader.builder(file).build(), false, 10, TimeUnit.MILLISECONDS));
+
+        awaitLines("0");
+
+        append("2\n3\n");
+        awaitLines("0", "12", "3");
+    }
+
+    @Test
+    public void carriesCrLfAcrossAppends() throws Exception {
+        append("0\r");
+        follow(new LineFollower(new LineReader(file), false, 10, TimeUnit.MILLISECONDS));
+
+        awaitLines("0");
+
+        append("\n1\r\n");
+        awaitLines("0", "1");
+    }
+
+    @Test
+    public void readsOnlyAppendedBytesFromEnd() throws Exception {
+        append("0\n");
+        follow(new LineFollower(new LineReader(file), true, 10, TimeUnit.MILLISECONDS));
+
+        awaitState(Thread.State.TIMED_WAITING);
+        append("1\n");
+
+        awaitLines("1");
+    }
+
+    @Test
+    public void restartsAfterTruncation() throws Exception {
+        append("00\n11\n2");
+        follow(new LineFollower(new LineReader(file), false, 10, TimeUnit.MILLISECONDS));
+
+        awaitLines("00", "11");
+
+        Files.write(file, "3\n".getBytes(UTF_8), TRUNCATE_EXISTING);
+        awaitLines("00", "11", "2", "3");
+    }
+
+    @Test
+    public void followsRotatedFile() throws Exception {
+        append("0\n");
+        follow(new LineFollower(new LineReader(file), false, 10, TimeUnit.MILLISECONDS));
+
+        awaitLines("0");
+
+        append("1");
+        Files.move(file, file.resolveSibling("rotated.log"));
+        Files.write(file, "2\n".getBytes(UTF_8));
+
+        awaitLines("0", "1", "2");
+    }
+
+    @Test
+    public void skipsLinesOnlyBeforeRotation() throws Exception {
+        append("0\n1\n");
+        follow(new LineFollower(LineReader.builder(file).fromLine(1).build(), false, 10, TimeUnit.MILLISECONDS));
+
+        awaitLines("1");
+
+        Files.move(file, file.resolveSibling("rotated.log"));
+        Files.write(file, "2\n3\n".getBytes(UTF_8));
+
+        awaitLines("1", "2", "3");
+    }
+
+    @Test
+    public void waitsForDemand() throws Exception {
+        append("0\n1\n2\n");
+        subscriber.request = 1;
+        follow(new LineFollower(new LineReader(file), false, 10, TimeUnit.MILLISECONDS));
+
+        awaitLines("0");
+        awaitState(Thread.State.WAITING);
+        assertThat(subscriber.lines).containsExactly("0");
+
+        subscriber.subscription.request(1);
+        awaitLines("0", "1");
+
+        subscriber.subscription.request(2);
+        append("3\n");
+        awaitLines("0", "1", "2", "3");
+    }
+
+    @Test
+    public void failsOnMissingFile() throws Exception {
+        Files.delete(file);
+        follow(new LineFollower(file));
+
+        assertThat(subscriber.terminated.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(subscriber.error).isInstanceOf(NoSuchFileException.class);
+    }
+
+    @Test
+    public void doesNotSupportMapping() throws Exception {
+        follow(new LineFollower(LineReader.builder(file).mapping(16).build(), false, 1, TimeUnit.SECONDS));
+
+        assertThat(subscriber.terminated.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(subscriber.error).isInstanceOf(IllegalStateException.class);
+    }
+
+    @After
+    public void cancel() throws Exception {
+        if (subscriber.subscription != null) subscriber.subscription.cancel();
+
+        thread.join(TimeUnit.SECONDS.toMillis(5));
+
+        assertThat(thread.isAlive()).isFalse();
+        assertThat(subscriber.completed).isFalse();
+    }
+
+    void follow(LineFollower follower) {
+        thread = new Thread(() -> follower.subscribe(subscriber));
+        thread.start();
+    }
+
+    void append(String content) throws IOException {
+        Files.write(file, content.getBytes(UTF_8), APPEND);
+    }
+
+    /**
+     * Waits until the following thread polls the file (timed waiting) or waits for demand.
+     */
+    void awaitState(Thread.State state) {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+
+        while (thread.getState() != state && System.nanoTime() < deadline) {
+            Thread.yield();
+        }
+        assertThat(thread.getState()).isEqualTo(state);
+    }
+
+    void awaitLines(String... lines) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+
+        while (subscriber.lines.size() < lines.length && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertThat(subscriber.lines).containsExactly(lines);
+    }
+
+    static class FollowSubscriber implements Subscriber<ByteBuffer> {
+
+        long request = MAX_VALUE;
+        List<String> lines = new CopyOnWriteArrayList<>();
+        CountDownLatch terminated = new CountDownLatch(1);
+
+        volatile Throwable error;
+        volatile boolean completed;
+        volatile Subscription subscription;
+
+        @Override
+        public void onSubscribe(Subscription s) {
+            subscription = s;
+            s.request(request);
+        }
+
+        @Override
+        public void onNext(ByteBuffer line) {
+            lines.add(UTF_8.decode(line).toString());
+        }
+
+        @Override
+        public void onError(Throwable e) {
+            error = e;
+            terminated.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+            terminated.countDown();
+        }
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2018 Alexey Zhytnik
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zhytnik.reactive.io;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static com.zhytnik.reactive.io.ReverseLineReaderTest.read;
+import static java.lang.Long.MAX_VALUE;
+import static java.nio.file.Files.write;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * @author Alexey Zhytnik
+ */
+public class LineIndexTest {
+
+    @Rule
+    public TemporaryFolder files = new TemporaryFolder();
+
+    Path file;
+    List<String> lines;
+
+    @Before
+    public void setUp() throws Exception {
+        file = files.newFile().toPath();
+
+        final byte[] content = new byte[20_000];
+        final Random random = new Random(23);
+
+        for (int i = 0; i < content.length; i++) {
+            final int c = random.nextInt(10);
+            content[i] = (byte) (c == 0 ? '\r' : c == 1 ? '\n' : 'a' + c);
+        }
+        write(file, content);
+        lines = read(new LineReader(file), MAX_VALUE);
+    }
+
+    @Test
+    public void seeksToAnyLine() throws Exception {
+        for (int step : new int[]{1, 3, 64, 100_000}) {
+            final LineIndex index = LineIndex.build(file, step);
+
+            assertThat(index.lines()).isEqualTo(lines.size());
+
+            for (int line = 0; line < lines.size(); line += 7) {
+                final LineReader reader = LineReader.builder(file).fromLine(line, index).build();
+
+                assertThat(read(reader, 2)).isEqualTo(lines.subList(line, Math.min(line + 2, lines.size())));
+            }
+        }
+    }
+
+    @Test
+    public void seeksToLinesAfterCrLf() throws Exception {
+        write(file, "0\r\n1\r\n\r\n3\r\r\n5".getBytes());
+
+        final LineIndex index = LineIndex.build(file, 1);
+
+        assertThat(index.lines()).isEqualTo(6);
+        assertThat(read(LineReader.builder(file).fromLine(2, index).build(), MAX_VALUE)).containsExactly("", "3", "", "5");
+        assertThat(read(LineReader.builder(file).fromLine(4, index).build(), MAX_VALUE)).containsExactly("", "5");
+        assertThat(read(LineReader.builder(file).fromLine(6, index).build(), MAX_VALUE)).isEmpty();
+    }
+
+    @Test
+    public void skipsLinesWithoutIndex() {
+        final LineReader reader = LineReader.builder(file).fromLine(100).build();
+
+        assertThat(read(reader, MAX_VALUE)).isEqualTo(lines.subList(100, lines.size()));
+        assertThat(reader.count()).isEqualTo(lines.size() - 100);
+    }
+
+    @Test
+    public void readsFromLineInParallel() throws Exception {
+        final LineIndex index = LineIndex.build(file, 16);
+        final LineReader reader = LineReader.builder(file).fromLine(1000, index).build();
+
+        final LineStatistics statistics = new ParallelLineReader(reader, 4, new ForkJoinPool(4)).statistics();
+
+        assertThat(statistics.lines()).isEqualTo(lines.size() - 1000);
+        assertThat(reader.count()).isEqualTo(lines.size() - 1000);
+    }
+
+    @Test
+    public void savesAndLoadsIndex() throws Exception {
+        final Path sidecar = LineIndex.sidecar(file);
+
+        assertThat(LineIndex.load(file, sidecar)).isEmpty();
+
+        final LineIndex index = LineIndex.open(file, 10);
+        final LineIndex loaded = LineIndex.load(file, sidecar).orElseThrow(AssertionError::new);
+
+        assertThat(Files.exists(sidecar)).isTrue();
+        assertThat(loaded.step()).isEqualTo(10);
+        assertThat(loaded.lines()).isEqualTo(index.lines());
+        assertThat(read(LineReader.builder(file).fromLine(55, loaded).build(), 1)).containsExactly(lines.get(55));
+    }
+
+    @Test
+    public void rejectsIndexOfChangedFile() throws Exception {
+        final Path sidecar = LineIndex.sidecar(file);
+        LineIndex.open(file, 10);
+
+        Files.setLastModifiedTime(file, FileTime.fromMillis(Files.getLastModifiedTime(file).toMillis() - 60_000));
+        assertThat(LineIndex.load(file, sidecar)).isEmpty();
+
+        write(file, "0\n1\n".getBytes());
+        assertThat(LineIndex.open(file, 10).lines()).isEqualTo(2);
+        assertThat(LineIndex.load(file, sidecar)).isPresent();
+    }
+
+    @Test
+    public void rejectsCorruptIndex() throws Exception {
+        final Path sidecar = LineIndex.sidecar(file);
+        LineIndex.open(file, 10);
+
+        final byte[] saved = Files.readAllBytes(sidecar);
+        for (int count : new int[]{-1, Integer.MAX_VALUE}) {
+            final byte[] corrupt = saved.clone();
+            ByteBuffer.wrap(corrupt).putInt(36, count);
+            write(sidecar, corrupt);
+
+            assertThat(LineIndex.load(file, sidecar)).isEmpty();
+        }
+        assertThat(LineIndex.open(file, 10).lines()).isEqualTo((long) lines.size());
+        assertThat(LineIndex.load(file, sidecar)).isPresent();
+    }
+
+    @Test
+    public void checksArguments() {
+        assertThatThrownBy(() -> LineIndex.build(file, 0)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> LineReader.builder(file).fromLine(-1)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
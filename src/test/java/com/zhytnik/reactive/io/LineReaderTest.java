@@ -25,6 +25,10 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.file.NoSuchFileException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
 import java.util.concurrent.Flow.Subscription;
 
 import static java.lang.Long.MAX_VALUE;
@@ -32,6 +36,7 @@ import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.nio.file.Files.write;
 import static java.nio.file.StandardOpenOption.APPEND;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 /**
  * @author Alexey Zhytnik
@@ -173,6 +178,362 @@ public class LineReaderTest {
         assertThat(subscriber.items).containsExactly("", "");
     }
 
+    @Test
+    public void acceptsRequestsFromOtherThreads() {
+        writeToFile('0', '\n', '1', '\n', '2');
+
+        subscriber.request = 1;
+        subscriber.inclusion = () -> {
+            if (subscriber.items.size() < 3) inOtherThread(subscriber::doRequest);
+        };
+        reader.subscribe(subscriber);
+
+        assertThat(subscriber.items).containsExactly("0", "1", "2");
+    }
+
+    @Test
+    public void acceptsRequestsAfterOnNextReturned() {
+        writeToFile('0', '\n', '1', '\n', '2');
+
+        final Thread reading = Thread.currentThread();
+
+        reader = LineReader.builder(file.toPath()).awaitRequests().build();
+        subscriber.request = 1;
+        subscriber.inclusion = () -> {
+            if (subscriber.items.size() < 3) whenWaiting(reading, subscriber::doRequest);
+        };
+        reader.subscribe(subscriber);
+
+        assertThat(subscriber.items).containsExactly("0", "1", "2");
+    }
+
+    @Test
+    public void waitsForRequestsUntilCancellation() throws Exception {
+        writeToFile('0', '\n', '1', '\n', '2');
+
+        final Thread reading = Thread.currentThread();
+        final Thread[] cancelling = new Thread[1];
+
+        reader = LineReader.builder(file.toPath()).awaitRequests().build();
+        subscriber.request = 1;
+        subscriber.inclusion = () -> cancelling[0] = whenWaiting(reading, subscriber::unsubscribe);
+        reader.subscribe(subscriber);
+        cancelling[0].join();
+
+        assertThat(subscriber.items).containsExactly("0");
+    }
+
+    @Test
+    public void overflowOfRequestsIsUnboundedDemand() {
+        writeToFile('0', '\n', '1', '\n', '2');
+
+        subscriber.request = MAX_VALUE - 1;
+        subscriber.inclusion = () -> {
+            if (subscriber.items.size() == 1) subscriber.doRequest();
+        };
+        reader.subscribe(subscriber);
+
+        assertThat(subscriber.items).containsExactly("0", "1", "2");
+    }
+
+    @Test
+    public void readsIntoDirectMemory() {
+        reader = LineReader.builder(file.toPath()).directMemory().build();
+        readAll(
+                '0', '1', '\r', '\n',
+                '4', '\n',
+                '7', '\r',
+                '8'
+        );
+
+        assertThat(subscriber.direct).isTrue();
+        assertThat(subscriber.items).containsExactly("01", "4", "7", "8");
+    }
+
+    @Test
+    public void readsByMappedWindows() {
+        reader = LineReader.builder(file.toPath()).mapping(2).build();
+        readAll(
+                '0', '1', '2', '3', '\n',
+                '4', '5', '\r', '\n',
+                '6', '7', '\r',
+                '\r', '\n',
+                '8'
+        );
+
+        assertThat(subscriber.direct).isTrue();
+        assertThat(subscriber.items).containsExactly("0123", "45", "67", "", "8");
+    }
+
+    @Test
+    public void checksMappingWindow() {
+        assertThatThrownBy(() -> LineReader.builder(file.toPath()).mapping(0))
+                .isInstanceOf(IllegalArgumentException.class);
+
+        subscriber.doCancel = true;
+        reader.subscribe(subscriber);
+    }
+
+    @Test
+    public void readsBySmallPages() {
+        reader = LineReader.builder(file.toPath()).pageSize(1).generalMemorySize(2).build();
+        readAll(
+                '0', '1', '2', '\r', '\n',
+                '4', '\n',
+                '\r', '\n',
+                '8'
+        );
+
+        assertThat(subscriber.items).containsExactly("012", "4", "", "8");
+    }
+
+    @Test
+    public void readsAdaptively() {
+        reader = LineReader.builder(file.toPath()).pageSize(1).generalMemorySize(2).adaptive().build();
+        readAll(
+                '0', '1', '2', '3', '4', '5', '6', '\n',
+                '7', '\r', '\n',
+                '8'
+        );
+
+        assertThat(subscriber.items).containsExactly("0123456", "7", "8");
+    }
+
+    @Test
+    public void checksMemorySizes() {
+        assertThatThrownBy(() -> LineReader.builder(file.toPath()).pageSize(0))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> LineReader.builder(file.toPath()).generalMemorySize(-1))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> LineReader.builder(file.toPath()).pageSize(4).generalMemorySize(7).build())
+                .isInstanceOf(IllegalArgumentException.class);
+
+        subscriber.doCancel = true;
+        reader.subscribe(subscriber);
+    }
+
+    @Test
+    public void reusesMemoryOfPool() {
+        final BufferPool pool = new BufferPool();
+        reader = LineReader.builder(file.toPath()).pool(pool).build();
+        readAll('0', '\n', '1');
+
+        assertThat(pool.retained()).isEqualTo(1);
+
+        final ReadAssertionSubscriber next = new ReadAssertionSubscriber();
+        next.request = MAX_VALUE;
+        reader.subscribe(next);
+        next.validate();
+
+        assertThat(pool.retained()).isEqualTo(1);
+        assertThat(next.items).containsExactly("0", "1");
+        assertThat(subscriber.items).containsExactly("0", "1");
+    }
+
+    @Test
+    public void readsLongLinesByFragments() {
+        reader = LineReader.builder(file.toPath()).pageSize(2).generalMemorySize(8).fragments().build();
+        readAll(
+                '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', '\r', '\n',
+                'a', '\n',
+                'b', 'c', 'd', 'e', 'f'
+        );
+
+        assertThat(String.join("", subscriber.items)).isEqualTo("0123456789abcdef");
+        assertThat(subscriber.lines).containsExactly("0123456789", "a", "bcdef");
+        assertThat(subscriber.items.size()).isGreaterThan(3);
+    }
+
+    @Test
+    public void countsFragmentedLinesOnce() {
+        reader = LineReader.builder(file.toPath()).pageSize(1).generalMemorySize(2).fragments().build();
+        writeToFile('0', '1', '2', '3', '\n', '4', '5', '6', '\n', '7');
+
+        subscriber.request = 2;
+        reader.subscribe(subscriber);
+
+        assertThat(subscriber.lines).containsExactly("0123", "456");
+    }
+
+    @Test
+    public void readsLongLinesByFragmentsOfMappedWindows() {
+        reader = LineReader.builder(file.toPath()).mapping(2).fragments().build();
+        readAll('0', '1', '2', '3', '4', '5', '6', '\n', '7');
+
+        assertThat(subscriber.lines).containsExactly("0123456", "7");
+        assertThat(subscriber.items.size()).isGreaterThan(2);
+    }
+
+    @Test
+    public void boundsMemoryOfFragmentedLines() {
+        reader = LineReader.builder(file.toPath()).fragments().build();
+
+        final char[] line = new char[1024 * 1024];
+        Arrays.fill(line, 'x');
+        readAll(line);
+
+        assertThat(subscriber.lines).hasSize(1);
+        assertThat(subscriber.lines.get(0)).hasSize(line.length);
+        assertThat(subscriber.items).allSatisfy(f -> assertThat(f.length()).isLessThanOrEqualTo(32 * 1024));
+    }
+
+    @Test
+    public void readsLinesWhichStartInByteRange() {
+        writeToFile('0', '0', '\r', '\n', '1', '1', '\n', '2', '2');
+
+        assertThat(read(0, 1)).containsExactly("00");
+        assertThat(read(1, 5)).containsExactly("11");
+        assertThat(read(2, 4)).isEmpty();
+        assertThat(read(3, 5)).containsExactly("11");
+        assertThat(read(4, 4)).isEmpty();
+        assertThat(read(5, 100)).containsExactly("22");
+        assertThat(read(0, 100)).containsExactly("00", "11", "22");
+
+        assertThat(LineReader.builder(file.toPath()).range(1, 5).build().count()).isEqualTo(1);
+        assertThat(LineReader.builder(file.toPath()).range(3, 9).build().count()).isEqualTo(2);
+        assertThat(LineReader.builder(file.toPath()).range(8, 9).build().count()).isEqualTo(0);
+
+        subscriber.doCancel = true;
+        reader.subscribe(subscriber);
+    }
+
+    @Test
+    public void readsEachLineOnceByAdjacentRanges() throws Exception {
+        final byte[] content = new byte[10_000];
+        final Random random = new Random(31);
+
+        for (int i = 0; i < content.length; i++) {
+            final int c = random.nextInt(8);
+            content[i] = (byte) (c == 0 ? '\r' : c == 1 ? '\n' : 'a' + c);
+        }
+        write(file.toPath(), content);
+
+        final List<String> expected = ReverseLineReaderTest.read(new LineReader(file.toPath()), MAX_VALUE);
+
+        for (int shards : new int[]{1, 2, 7, 100, 3000}) {
+            final List<String> lines = new ArrayList<>();
+            long count = 0;
+
+            for (int i = 0; i < shards; i++) {
+                final LineReader.Builder builder = LineReader.builder(file.toPath()).pageSize(16).generalMemorySize(64)
+                        .range(content.length * i / shards, content.length * (i + 1) / shards);
+
+                lines.addAll(ReverseLineReaderTest.read(builder.build(), MAX_VALUE));
+                count += builder.build().count();
+            }
+            assertThat(lines).isEqualTo(expected);
+            assertThat(count).isEqualTo(expected.size());
+        }
+        subscriber.doCancel = true;
+        reader.subscribe(subscriber);
+    }
+
+    @Test
+    public void failsOnNotFoundLinesOfRange() {
+        writeToFile('0', '\n', '1', '\n', '2');
+
+        reader = LineReader.builder(file.toPath()).range(0, 3).build();
+        subscriber.request = 3;
+        reader.subscribe(subscriber.asExpected(LineReader.NoSuchLineCountException.class));
+
+        assertThat(subscriber.items).containsExactly("0", "1");
+    }
+
+    @Test
+    public void checksRange() {
+        assertThatThrownBy(() -> LineReader.builder(file.toPath()).range(-1, 1))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> LineReader.builder(file.toPath()).range(2, 1))
+                .isInstanceOf(IllegalArgumentException.class);
+
+        subscriber.doCancel = true;
+        reader.subscribe(subscriber);
+    }
+
+    @Test
+    public void readsRecordsOfSingleByteDelimiter() {
+        reader = LineReader.builder(file.toPath()).delimiter((byte) 0).build();
+        readAll('a', '\0', 'b', '\n', 'b', '\0', '\0', 'c');
+
+        assertThat(subscriber.items).containsExactly("a", "b\nb", "", "c");
+    }
+
+    @Test
+    public void readsRecordsOfDelimiterDividedBetweenReads() throws Exception {
+        final String content = "ab\n---\ncd\n--\n---\n\n---\n\n---\nef\n-";
+        write(file.toPath(), content.getBytes(UTF_8));
+
+        for (int page = 1; page < 8; page++) {
+            final LineReader delimited = LineReader.builder(file.toPath())
+                    .pageSize(page).generalMemorySize(2 * page).delimiter("\n---\n".getBytes(UTF_8))
+                    .build();
+
+            assertThat(ReverseLineReaderTest.read(delimited, MAX_VALUE)).containsExactly("ab", "cd\n--", "", "", "ef\n-");
+        }
+        subscriber.doCancel = true;
+        reader.subscribe(subscriber);
+    }
+
+    @Test
+    public void readsRecordsWhichStartInByteRange() {
+        writeToFile('a', 'a', '|', '|', 'b', 'b', '|', '|', 'c', 'c');
+
+        assertThat(records(0, 1)).containsExactly("aa");
+        assertThat(records(1, 5)).containsExactly("bb");
+        assertThat(records(3, 4)).isEmpty();
+        assertThat(records(4, 5)).containsExactly("bb");
+        assertThat(records(5, 100)).containsExactly("cc");
+        assertThat(records(0, 3)).containsExactly("aa");
+        assertThat(records(3, 6)).containsExactly("bb");
+        assertThat(records(6, 10)).containsExactly("cc");
+
+        reader = LineReader.builder(file.toPath()).delimiter((byte) '|', (byte) '|').fromLine(1).build();
+        readAll();
+        assertThat(subscriber.items).containsExactly("bb", "cc");
+    }
+
+    @Test
+    public void readsLongRecordsByFragments() {
+        reader = LineReader.builder(file.toPath()).pageSize(2).generalMemorySize(4)
+                .delimiter((byte) '<', (byte) '>').fragments().build();
+        readAll('0', '1', '2', '3', '4', '5', '6', '7', '8', '<', '>', 'a', '<', '>', 'b', 'c', 'd', 'e', '<');
+
+        assertThat(subscriber.lines).containsExactly("012345678", "a", "bcde<");
+        assertThat(subscriber.items.size()).isGreaterThan(3);
+    }
+
+    @Test
+    public void readsRecordsByFragmentsOfMinimalMemory() {
+        reader = LineReader.builder(file.toPath()).pageSize(4096).generalMemorySize(8192)
+                .delimiter("\n---\n".getBytes(UTF_8)).fragments().build();
+
+        final char[] record = new char[4088];
+        Arrays.fill(record, 'x');
+        readAll((new String(record) + "\n---\nabcdef\n---\n").toCharArray());
+
+        assertThat(subscriber.lines).containsExactly(new String(record), "abcdef");
+    }
+
+    @Test
+    public void checksDelimiter() {
+        assertThatThrownBy(() -> LineReader.builder(file.toPath()).delimiter())
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> LineReader.builder(file.toPath()).delimiter((byte) 0).build().count())
+                .isInstanceOf(IllegalStateException.class);
+
+        subscriber.doCancel = true;
+        reader.subscribe(subscriber);
+    }
+
+    List<String> records(long from, long to) {
+        final LineReader delimited = LineReader.builder(file.toPath()).range(from, to).delimiter((byte) '|', (byte) '|').build();
+        return ReverseLineReaderTest.read(delimited, MAX_VALUE);
+    }
+
+    List<String> read(long from, long to) {
+        return ReverseLineReaderTest.read(LineReader.builder(file.toPath()).range(from, to).build(), MAX_VALUE);
+    }
+
     @After
     public void validate() {
         subscriber.validate();
@@ -184,6 +545,31 @@ public class LineReaderTest {
         reader.subscribe(subscriber);
     }
 
+    static void inOtherThread(Runnable action) {
+        final Thread thread = new Thread(action);
+        thread.start();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Runs the action in other thread when the thread waits, for example for requests.
+     */
+    static Thread whenWaiting(Thread thread, Runnable action) {
+        final Thread other = new Thread(() -> {
+            while (thread.getState() != Thread.State.WAITING) {
+                Thread.yield();
+            }
+            action.run();
+        });
+        other.setDaemon(true);
+        other.start();
+        return other;
+    }
+
     void writeToFile(char... chars) {
         final byte[] bytes = new byte[chars.length];
 
@@ -199,11 +585,20 @@ public class LineReaderTest {
 
     static class ReadAssertionSubscriber extends BaseAssertionSubscriber<ByteBuffer, String> {
 
+        boolean direct;
         boolean doCancel;
+        Runnable inclusion;
+
+        String fragment = "";
+        List<String> lines = new ArrayList<>();
+        LineReader.LineSubscription subscription;
 
         @Override
         public void onSubscribe(Subscription s) {
             super.onSubscribe(s);
+            if (s instanceof LineReader.LineSubscription) {
+                subscription = (LineReader.LineSubscription) s;
+            }
             if (doCancel) {
                 unsubscribe();
             } else {
@@ -214,7 +609,15 @@ public class LineReaderTest {
         @Override
         public void onNext(ByteBuffer line) {
             super.onNext(line);
+            direct = line.isDirect();
             items.add(UTF_8.decode(line).toString());
+
+            fragment += items.get(items.size() - 1);
+            if (subscription == null || !subscription.continues()) {
+                lines.add(fragment);
+                fragment = "";
+            }
+            if (inclusion != null) inclusion.run();
         }
     }
 }
\ No newline at end of file
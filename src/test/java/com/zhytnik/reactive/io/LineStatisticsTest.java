@@ -0,0 +1,107 @@
+/*
+ * Copyright 2018 Alexey Zhytnik
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zhytnik.reactive.io;
+
+import com.zhytnik.reactive.io.LineReaderTest.ReadAssertionSubscriber;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import static java.lang.Long.MAX_VALUE;
+import static java.nio.file.Files.write;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * @author Alexey Zhytnik
+ */
+public class LineStatisticsTest {
+
+    @ClassRule
+    public static TemporaryFolder files = new TemporaryFolder();
+
+    @Test
+    public void countsLikeLineReader() throws Exception {
+        final Path file = files.newFile().toPath();
+        final byte[] content = new byte[64 * 1024];
+        final Random random = new Random(13);
+
+        for (int i = 0; i < content.length; i++) {
+            final int c = random.nextInt(12);
+            content[i] = (byte) (c == 0 ? '\r' : c == 1 ? '\n' : 'a' + c);
+        }
+        write(file, content);
+
+        final ReadAssertionSubscriber subscriber = new ReadAssertionSubscriber();
+        subscriber.request = MAX_VALUE;
+        new LineReader(file).subscribe(subscriber);
+        subscriber.validate();
+
+        final long nonEmpty = subscriber.items.stream().filter(line -> !line.isEmpty()).count();
+        final long max = subscriber.items.stream().mapToLong(String::length).max().orElse(0);
+
+        for (LineReader reader : Arrays.asList(
+                new LineReader(file),
+                LineReader.builder(file).pageSize(7).generalMemorySize(14).build(),
+                LineReader.builder(file).mapping(5).build())) {
+
+            final LineStatistics statistics = reader.statistics();
+
+            assertThat(statistics.lines()).isEqualTo(subscriber.items.size());
+            assertThat(statistics.nonEmptyLines()).isEqualTo(nonEmpty);
+            assertThat(statistics.maxLength()).isEqualTo(max);
+            assertThat(reader.count()).isEqualTo(subscriber.items.size());
+        }
+    }
+
+    @Test
+    public void countsLongLinesInBoundedMemory() throws Exception {
+        final Path file = files.newFile().toPath();
+        final byte[] content = new byte[100_000];
+        Arrays.fill(content, (byte) 'x');
+        content[10] = '\n';
+        write(file, content);
+
+        final LineStatistics statistics = LineReader.builder(file).pageSize(2).generalMemorySize(4).build().statistics();
+
+        assertThat(statistics.lines()).isEqualTo(2);
+        assertThat(statistics.nonEmptyLines()).isEqualTo(2);
+        assertThat(statistics.maxLength()).isEqualTo(content.length - 11);
+    }
+
+    @Test
+    public void countsEmptyFile() throws Exception {
+        final LineStatistics statistics = new LineReader(files.newFile().toPath()).statistics();
+
+        assertThat(statistics.lines()).isEqualTo(0);
+        assertThat(statistics.nonEmptyLines()).isEqualTo(0);
+        assertThat(statistics.maxLength()).isEqualTo(0);
+    }
+
+    @Test
+    public void throwsFailuresOfReading() throws Exception {
+        final File file = files.newFile();
+        file.delete();
+
+        assertThatThrownBy(() -> new LineReader(file.toPath()).count()).isInstanceOf(UncheckedIOException.class);
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2018 Alexey Zhytnik
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zhytnik.reactive.io;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Alexey Zhytnik
+ */
+public class LineTerminatorsTest {
+
+    @Test
+    public void findsTerminatorsAtAnyPosition() {
+        for (ByteBuffer chunk : chunks(27)) {
+            for (int i = 0; i < chunk.capacity(); i++) {
+                fill(chunk, (byte) 'a');
+
+                chunk.put(i, (byte) (i % 2 == 0 ? '\r' : '\n'));
+
+                assertThat(LineTerminators.indexOf(chunk, 0, chunk.capacity())).isEqualTo(i);
+                assertThat(LineTerminators.indexOf(chunk, i, chunk.capacity())).isEqualTo(i);
+                assertThat(LineTerminators.indexOf(chunk, i + 1, chunk.capacity())).isEqualTo(chunk.capacity());
+                assertThat(LineTerminators.indexOf(chunk, 0, i)).isEqualTo(i);
+            }
+        }
+    }
+
+    @Test
+    public void findsFirstOfSeveralTerminators() {
+        for (ByteBuffer chunk : chunks(16)) {
+            fill(chunk, (byte) 'a');
+
+            chunk.put(3, (byte) '\n').put(4, (byte) '\r').put(5, (byte) '\n');
+
+            assertThat(LineTerminators.indexOf(chunk, 0, 16)).isEqualTo(3);
+            assertThat(LineTerminators.indexOf(chunk, 4, 16)).isEqualTo(4);
+            assertThat(LineTerminators.indexOf(chunk, 5, 16)).isEqualTo(5);
+            assertThat(LineTerminators.indexOf(chunk, 6, 16)).isEqualTo(16);
+        }
+    }
+
+    @Test
+    public void ignoresSimilarBytes() {
+        for (ByteBuffer chunk : chunks(16)) {
+            for (int b = Byte.MIN_VALUE; b <= Byte.MAX_VALUE; b++) {
+                if (b == '\r' || b == '\n') continue;
+
+                fill(chunk, (byte) b);
+                assertThat(LineTerminators.indexOf(chunk, 0, 16)).isEqualTo(16);
+            }
+        }
+    }
+
+    @Test
+    public void doesNotChangeChunk() {
+        final ByteBuffer chunk = ByteBuffer.allocate(32);
+        chunk.position(3).mark().position(5).limit(30);
+
+        LineTerminators.indexOf(chunk, 5, 30);
+
+        assertThat(chunk.position()).isEqualTo(5);
+        assertThat(chunk.limit()).isEqualTo(30);
+        assertThat(chunk.reset().position()).isEqualTo(3);
+    }
+
+    static ByteBuffer[] chunks(int capacity) {
+        return new ByteBuffer[]{
+                ByteBuffer.allocate(capacity),
+                ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN),
+                ByteBuffer.allocateDirect(capacity),
+                ByteBuffer.allocateDirect(capacity).order(ByteOrder.LITTLE_ENDIAN)
+        };
+    }
+
+    static void fill(ByteBuffer chunk, byte value) {
+        for (int i = 0; i < chunk.capacity(); i++) chunk.put(i, value);
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2018 Alexey Zhytnik
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zhytnik.reactive.io;
+
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Flow.Subscriber;
+import java.util.concurrent.Flow.Subscription;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static java.nio.charset.StandardCharsets.UTF_16;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.Files.write;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * @author Alexey Zhytnik
+ */
+public class LineTextTest {
+
+    @ClassRule
+    public static TemporaryFolder files = new TemporaryFolder();
+
+    final LineText text = new LineText();
+
+    @Test
+    public void usesBytesOfAsciiLines() {
+        for (String line : new String[]{"", "a", "0123456", "01234567", "0123456789abcdefghijk"}) {
+            assertThat(text.wrap(heap(line))).hasToString(line);
+            assertThat(text.isLatin1()).isTrue();
+            assertThat(text.length()).isEqualTo(line.length());
+
+            assertThat(text.wrap(direct(line))).hasToString(line);
+            assertThat(text.isLatin1()).isTrue();
+        }
+    }
+
+    @Test
+    public void decodesOtherLines() {
+        for (String line : new String[]{"ї", "0123456789ї", "ї0123456789", "текст 😀 text"}) {
+            assertThat(text.wrap(heap(line))).hasToString(line);
+            assertThat(text.isLatin1()).isFalse();
+            assertThat(text.length()).isEqualTo(line.length());
+            assertThat(text.charAt(line.length() - 1)).isEqualTo(line.charAt(line.length() - 1));
+
+            assertThat(text.wrap(direct(line))).hasToString(line);
+        }
+    }
+
+    @Test
+    public void replacesMalformedBytes() {
+        final byte[] bytes = {'a', (byte) 0xC3, 'b', (byte) 0xFF};
+
+        assertThat(text.wrap(ByteBuffer.wrap(bytes))).hasToString(new String(bytes, UTF_8));
+        assertThat(new LineText(ISO_8859_1).wrap(ByteBuffer.wrap(bytes))).hasToString(new String(bytes, ISO_8859_1));
+    }
+
+    @Test
+    public void doesNotChangeLine() {
+        final ByteBuffer line = ByteBuffer.wrap("__текст__".getBytes(UTF_8));
+        line.position(2).limit(line.limit() - 2).mark();
+
+        assertThat(text.wrap(line)).hasToString("текст");
+        assertThat(line.position()).isEqualTo(2);
+        assertThat(line.limit()).isEqualTo(line.capacity() - 2);
+        assertThat(line.reset().position()).isEqualTo(2);
+    }
+
+    @Test
+    public void viewsSubsequences() {
+        assertThat(text.wrap(heap("0123456789")).subSequence(2, 5)).hasToString("234");
+        assertThat(text.subSequence(2, 5).subSequence(1, 3)).hasToString("34");
+        assertThat(text.wrap(heap("ї0123")).subSequence(1, 3)).hasToString("01");
+
+        assertThatThrownBy(() -> text.subSequence(3, 2)).isInstanceOf(IndexOutOfBoundsException.class);
+        assertThatThrownBy(() -> text.wrap(heap("01")).charAt(2)).isInstanceOf(IndexOutOfBoundsException.class);
+        assertThatThrownBy(() -> text.charAt(-1)).isInstanceOf(IndexOutOfBoundsException.class);
+    }
+
+    @Test
+    public void supportsRegularExpressions() throws Exception {
+        final Path file = files.newFile().toPath();
+        write(file, "ERROR 1\nINFO 2\nERROR її\r\nWARN\n".getBytes(UTF_8));
+
+        final Matcher matcher = Pattern.compile("ERROR (.+)").matcher("");
+        final List<String> errors = new ArrayList<>();
+
+        new LineReader(file).subscribe(new Subscriber<ByteBuffer>() {
+            @Override
+            public void onSubscribe(Subscription s) {
+                s.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(ByteBuffer line) {
+                if (matcher.reset(text.wrap(line)).matches()) errors.add(matcher.group(1));
+            }
+
+            @Override
+            public void onError(Throwable e) {
+                throw new AssertionError(e);
+            }
+
+            @Override
+            public void onComplete() {
+            }
+        });
+        assertThat(errors).containsExactly("1", "її");
+    }
+
+    @Test
+    public void checksCharset() {
+        assertThatThrownBy(() -> new LineText(UTF_16)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    static ByteBuffer heap(String line) {
+        return ByteBuffer.wrap(line.getBytes(UTF_8));
+    }
+
+    static ByteBuffer direct(String line) {
+        final byte[] bytes = line.getBytes(UTF_8);
+        return ByteBuffer.allocateDirect(bytes.length).put(bytes).flip();
+    }
+}
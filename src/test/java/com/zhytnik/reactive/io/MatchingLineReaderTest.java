@@ -0,0 +1,146 @@
+/*
+ * Copyright 2018 Alexey Zhytnik
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zhytnik.reactive.io;
+
+import com.zhytnik.reactive.io.LineReaderTest.ReadAssertionSubscriber;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.file.NoSuchFileException;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static java.lang.Long.MAX_VALUE;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.Files.write;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * @author Alexey Zhytnik
+ */
+public class MatchingLineReaderTest {
+
+    @ClassRule
+    public static TemporaryFolder files = new TemporaryFolder();
+
+    File file;
+    MatchingLineReader reader;
+    ReadAssertionSubscriber subscriber;
+
+    @Before
+    public void setUp() throws Exception {
+        file = files.newFile();
+        reader = new MatchingLineReader(file.toPath(), bytes("foo"));
+        subscriber = new ReadAssertionSubscriber();
+        subscriber.request = MAX_VALUE;
+    }
+
+    @Test
+    public void readsSameLinesAsFilteredLineReader() throws Exception {
+        final byte[] content = new byte[20_000];
+        final Random random = new Random(17);
+
+        for (int i = 0; i < content.length; i++) {
+            final int c = random.nextInt(40);
+            content[i] = (byte) (c == 0 ? '\r' : c == 1 ? '\n' : 'a' + c % 6);
+        }
+        write(file.toPath(), content);
+
+        final List<String> expected = ReverseLineReaderTest.read(new LineReader(file.toPath()), MAX_VALUE).stream()
+                .filter(line -> line.contains("abcd") || line.contains("f") || line.contains("eeee"))
+                .collect(Collectors.toList());
+
+        for (int page = 1; page < 40; page += 3) {
+            final LineReader lines = (page < 20)
+                    ? LineReader.builder(file.toPath()).pageSize(page).generalMemorySize(2 * page).build()
+                    : LineReader.builder(file.toPath()).mapping(page).build();
+
+            final MatchingLineReader matching = new MatchingLineReader(lines, bytes("abcd"), bytes("f"), bytes("eeee"));
+
+            assertThat(ReverseLineReaderTest.read(matching, MAX_VALUE)).isEqualTo(expected);
+        }
+        assertThat(expected).isNotEmpty();
+
+        reader.subscribe(subscriber);
+    }
+
+    @Test
+    public void readsLinesAroundPatterns() throws Exception {
+        write(file.toPath(), "foo\r\nbar\n\nafoob\r\rbarfo\no\nfoo".getBytes(UTF_8));
+
+        reader.subscribe(subscriber);
+
+        assertThat(subscriber.items).containsExactly("foo", "afoob", "foo");
+    }
+
+    @Test
+    public void readsOnlyRequestedLines() throws Exception {
+        write(file.toPath(), "foo1\nbar\nfoo2\nfoo3".getBytes(UTF_8));
+
+        subscriber.request = 2;
+        reader.subscribe(subscriber);
+
+        assertThat(subscriber.items).containsExactly("foo1", "foo2");
+    }
+
+    @Test
+    public void failsOnNotZeroRemainingLines() throws Exception {
+        write(file.toPath(), "foo\nbar\n".getBytes(UTF_8));
+
+        subscriber.request = 2;
+        reader.subscribe(subscriber.asExpected(LineReader.NoSuchLineCountException.class));
+
+        assertThat(subscriber.items).containsExactly("foo");
+        assertThat(subscriber.isFailed()).isTrue();
+    }
+
+    @Test
+    public void processesInternalErrors() {
+        file.delete();
+        reader.subscribe(subscriber.asExpected(NoSuchFileException.class));
+
+        assertThat(subscriber.isFailed()).isTrue();
+    }
+
+    @Test
+    public void checksPatterns() {
+        assertThatThrownBy(() -> new MatchingLineReader(file.toPath()))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new MatchingLineReader(file.toPath(), new byte[0]))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new MatchingLineReader(file.toPath(), bytes("a\nb")))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new MatchingLineReader(LineReader.builder(file.toPath()).fromLine(1).build(), bytes("a")))
+                .isInstanceOf(IllegalArgumentException.class);
+
+        reader.subscribe(subscriber);
+    }
+
+    @After
+    public void validate() {
+        subscriber.validate();
+    }
+
+    static byte[] bytes(String text) {
+        return text.getBytes(UTF_8);
+    }
+}
@@ -162,4 +162,99 @@ public class MemoryAllocatorTest {
         assertThat(swapped.reset().position()).isEqualTo(0);
         assertThat(swapped.reset().get(0)).isEqualTo((byte) 7);
     }
+
+    @Test
+    public void allocatesDirectMemory() {
+        allocator = new MemoryAllocator(true);
+
+        final ByteBuffer general = allocator.get();
+
+        allocator.get();
+        allocator.get();
+        allocator.get();
+        allocator.get();
+        allocator.get();
+        allocator.get();
+
+        assertThat(general.isDirect()).isTrue();
+        assertThat(allocator.get().isDirect()).isTrue();
+        assertThat(allocator.get()).isNotEqualTo(general);
+    }
+
+    @Test
+    public void allocatesByConfiguredPages() {
+        allocator = new MemoryAllocator(false, 16, 64, false, null);
+
+        final ByteBuffer general = allocator.get();
+
+        assertThat(general.capacity()).isEqualTo(64);
+        assertThat(general.limit() - general.position()).isEqualTo(16);
+        assertThat(allocator.get().position()).isEqualTo(16);
+    }
+
+    @Test
+    public void growsPagesWhichAreFilled() {
+        allocator = new MemoryAllocator(false, 16, 64, true, null);
+
+        allocator.get();
+        assertThat(allocator.get().remaining()).isEqualTo(32);
+
+        final ByteBuffer memory = allocator.get();
+        assertThat(memory.remaining()).isEqualTo(64);
+        assertThat(memory.capacity()).isGreaterThanOrEqualTo(8 * 64);
+
+        memory.limit(memory.position() + 1);
+        assertThat(allocator.get().remaining()).isEqualTo(64);
+    }
+
+    @Test
+    public void adaptiveGeneralMemoryHoldsLongLines() {
+        allocator = new MemoryAllocator(false, 16, 32, true, null);
+
+        final ByteBuffer first = allocator.get();
+        first.put(0, (byte) 5).limit(15);
+
+        final ByteBuffer second = allocator.get();
+        second.limit(30);
+
+        final ByteBuffer grown = allocator.get();
+
+        assertThat(grown).isNotEqualTo(first);
+        assertThat(grown.capacity()).isEqualTo(64);
+        assertThat(grown.reset().get(0)).isEqualTo((byte) 5);
+
+        grown.position(40).mark().limit(41);
+
+        assertThat(allocator.get()).isEqualTo(grown);
+    }
+
+    @Test
+    public void returnsMemoryToPool() {
+        final BufferPool pool = new BufferPool();
+        allocator = new MemoryAllocator(false, 4096, 8 * 4096, false, pool);
+
+        final ByteBuffer general = allocator.get();
+        allocator.release();
+
+        assertThat(pool.retained()).isEqualTo(1);
+        assertThat(pool.acquire(8 * 4096, false)).isSameAs(general);
+    }
+
+    @Test
+    public void returnsSwappedMemoryToPool() {
+        final BufferPool pool = new BufferPool();
+        allocator = new MemoryAllocator(false, 4096, 8 * 4096, false, pool);
+
+        allocator.get();
+        for (int i = 0; i < 7; i++) allocator.get();
+
+        final ByteBuffer temporal = allocator.get();
+        temporal.position(temporal.limit()).mark();
+
+        assertThat(allocator.get()).isNotEqualTo(temporal);
+        assertThat(pool.retained()).isEqualTo(1);
+
+        allocator.release();
+        assertThat(pool.retained()).isEqualTo(2);
+    }
 }
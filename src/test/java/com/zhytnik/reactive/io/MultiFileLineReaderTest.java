@@ -0,0 +1,213 @@
+/*
+ * Copyright 2018 Alexey Zhytnik
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zhytnik.reactive.io;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Flow.Subscription;
+import java.util.concurrent.ForkJoinPool;
+
+import static com.zhytnik.reactive.io.ReverseLineReaderTest.read;
+import static java.lang.Long.MAX_VALUE;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.Files.write;
+import static java.util.stream.Collectors.toList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * @author Alexey Zhytnik
+ */
+public class MultiFileLineReaderTest {
+
+    @Rule
+    public TemporaryFolder files = new TemporaryFolder();
+
+    List<Path> paths;
+    List<String> expected;
+    LinesSubscriber subscriber;
+
+    @Before
+    public void setUp() throws Exception {
+        paths = new ArrayList<>();
+        expected = new ArrayList<>();
+        subscriber = new LinesSubscriber();
+
+        final Random random = new Random(7);
+
+        for (int i = 0; i < 30; i++) {
+            final Path file = files.newFile(String.format("%02d.log", i)).toPath();
+            final byte[] content = new byte[random.nextInt(3) == 0 ? 0 : random.nextInt(50_000)];
+
+            for (int j = 0; j < content.length; j++) {
+                final int c = random.nextInt(40);
+                content[j] = (byte) (c == 0 ? '\r' : c < 3 ? '\n' : 'a' + c % 26);
+            }
+            write(file, content);
+            paths.add(file);
+
+            for (String line : read(new LineReader(file), MAX_VALUE)) {
+                expected.add(file.getFileName() + ":" + line);
+            }
+        }
+    }
+
+    @Test
+    public void readsLinesInOrderOfFiles() {
+        for (int parallelism : new int[]{1, 3, 8, 64}) {
+            subscriber = new LinesSubscriber();
+            reader(parallelism, true).subscribe(subscriber);
+            subscriber.validate();
+
+            assertThat(subscriber.items).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    public void waitsForTurnWhenReadAheadIsFull() {
+        for (int parallelism : new int[]{2, 8}) {
+            subscriber = new LinesSubscriber();
+            reader(parallelism, true, 1024).subscribe(subscriber);
+            subscriber.validate();
+
+            assertThat(subscriber.items).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    public void readsLinesOfFilesWithoutOrder() {
+        reader(8, false).subscribe(subscriber);
+
+        assertThat(subscriber.items).hasSameSizeAs(expected);
+
+        for (Path path : paths) {
+            final String prefix = path.getFileName() + ":";
+            assertThat(subscriber.items.stream().filter(line -> line.startsWith(prefix)).collect(toList()))
+                    .isEqualTo(expected.stream().filter(line -> line.startsWith(prefix)).collect(toList()));
+        }
+    }
+
+    @Test
+    public void readsOnlyRequestedLines() {
+        for (long request : new long[]{1, 10, 1000}) {
+            subscriber = new LinesSubscriber();
+            subscriber.request = request;
+            reader(4, true).subscribe(subscriber);
+            subscriber.validate();
+
+            assertThat(subscriber.items).isEqualTo(expected.subList(0, (int) request));
+        }
+    }
+
+    @Test
+    public void requestsCouldBeAddedDuringReading() {
+        subscriber.request = 1;
+        subscriber.next = 1;
+        reader(4, true).subscribe(subscriber.asExpected(LineReader.NoSuchLineCountException.class));
+
+        assertThat(subscriber.items).isEqualTo(expected);
+    }
+
+    @Test
+    public void failsWhenFilesEndBeforeRequestedLines() {
+        subscriber.request = expected.size() + 1;
+        reader(4, false).subscribe(subscriber.asExpected(LineReader.NoSuchLineCountException.class));
+
+        assertThat(subscriber.isFailed()).isTrue();
+        assertThat(subscriber.items).hasSize(expected.size());
+    }
+
+    @Test
+    public void failsOnMissingFile() {
+        paths.add(10, files.getRoot().toPath().resolve("missing.log"));
+        reader(4, true).subscribe(subscriber.asExpected(NoSuchFileException.class));
+
+        assertThat(subscriber.isFailed()).isTrue();
+    }
+
+    @Test
+    public void supportsCancellation() {
+        subscriber.cancelAt = 100;
+        reader(4, false).subscribe(subscriber);
+
+        assertThat(subscriber.items).hasSize(100);
+    }
+
+    @Test
+    public void findsFilesByGlob() throws Exception {
+        files.newFile("other.txt");
+        files.newFolder("folder.log");
+
+        assertThat(MultiFileLineReader.glob(files.getRoot().toPath(), "*.log")).isEqualTo(paths);
+
+        subscriber.request = 0;
+        new MultiFileLineReader(paths, 4, true).subscribe(subscriber);
+
+        assertThatThrownBy(() -> new MultiFileLineReader(paths, 0, true)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @After
+    public void tearDown() {
+        subscriber.validate();
+    }
+
+    MultiFileLineReader reader(int parallelism, boolean ordered) {
+        return reader(parallelism, ordered, 4 * 1024 * 1024);
+    }
+
+    MultiFileLineReader reader(int parallelism, boolean ordered, int readAhead) {
+        final BufferPool buffers = new BufferPool();
+        return new MultiFileLineReader(paths, path -> LineReader.builder(path).pageSize(512).pool(buffers).build(),
+                parallelism, ordered, new ForkJoinPool(4), readAhead);
+    }
+
+    static class LinesSubscriber extends BaseAssertionSubscriber<MultiFileLineReader.Line, String> {
+
+        long next;
+        long cancelAt;
+
+        {
+            request = MAX_VALUE;
+        }
+
+        @Override
+        public void onSubscribe(Subscription s) {
+            super.onSubscribe(s);
+            doRequest();
+        }
+
+        @Override
+        public void onNext(MultiFileLineReader.Line line) {
+            super.onNext(line);
+            items.add(line.path().getFileName() + ":" + UTF_8.decode(line.bytes()));
+
+            if (items.size() == cancelAt) unsubscribe();
+            if (next > 0) {
+                request = next;
+                doRequest();
+            }
+        }
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright 2018 Alexey Zhytnik
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zhytnik.reactive.io;
+
+import com.zhytnik.reactive.io.LineReaderTest.ReadAssertionSubscriber;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static java.lang.Long.MAX_VALUE;
+import static java.nio.file.Files.write;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Alexey Zhytnik
+ */
+public class ParallelLineReaderTest {
+
+    @ClassRule
+    public static TemporaryFolder files = new TemporaryFolder();
+
+    List<ReadAssertionSubscriber> subscribers = new ArrayList<>();
+
+    @Test
+    public void readsSameLinesAsLineReader() throws Exception {
+        final File file = files.newFile();
+        final byte[] content = new byte[64 * 1024];
+        final Random random = new Random(7);
+
+        for (int i = 0; i < content.length; i++) {
+            final int c = random.nextInt(12);
+            content[i] = (byte) (c == 0 ? '\r' : c == 1 ? '\n' : 'a' + c);
+        }
+        write(file.toPath(), content);
+
+        final List<String> expected = readSequentially(file);
+
+        for (int parallelism = 1; parallelism <= 33; parallelism += 4) {
+            assertThat(readInParallel(file, parallelism)).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    public void neverDividesCrLf() throws Exception {
+        final File file = files.newFile();
+        write(file.toPath(), new byte[]{'0', '1', '\r', '\n', '4', '5', '\r', '\n'});
+
+        final List<LineReader> ranges = new ParallelLineReader(file.toPath(), 2).split();
+
+        assertThat(ranges).hasSize(2);
+        assertThat(readInParallel(file, 2)).containsExactly("01", "45");
+        assertThat(readInParallel(file, 3)).containsExactly("01", "45");
+        assertThat(readInParallel(file, 8)).containsExactly("01", "45");
+    }
+
+    @Test
+    public void readsLongLinesByLessRanges() throws Exception {
+        final File file = files.newFile();
+        write(file.toPath(), new byte[]{'0', '1', '2', '3', '4', '5', '6', '7', '\n', '9'});
+
+        assertThat(new ParallelLineReader(file.toPath(), 5).split()).hasSize(2);
+        assertThat(readInParallel(file, 5)).containsExactly("01234567", "9");
+    }
+
+    @Test
+    public void readsEmptyFile() throws Exception {
+        final File file = files.newFile();
+
+        assertThat(readInParallel(file, 4)).isEmpty();
+        assertThat(subscribers).hasSize(1);
+    }
+
+    @Test
+    public void reportsFailuresToSubscriber() throws Exception {
+        final File file = files.newFile();
+        file.delete();
+
+        new ParallelLineReader(file.toPath(), 4).subscribe(i -> {
+            final ReadAssertionSubscriber subscriber = new ReadAssertionSubscriber();
+            subscriber.request = MAX_VALUE;
+            subscribers.add(subscriber);
+            return subscriber.asExpected(NoSuchFileException.class);
+        });
+
+        assertThat(subscribers).hasSize(1);
+        assertThat(subscribers.get(0).isFailed()).isTrue();
+    }
+
+    @Test
+    public void collectsSameStatisticsAsLineReader() throws Exception {
+        final File file = files.newFile();
+        write(file.toPath(), new byte[]{'0', '1', '\r', '\n', '\n', '4', '5', '6', '\r', '\r', '\n', '7'});
+
+        final LineStatistics expected = new LineReader(file.toPath()).statistics();
+
+        for (int parallelism = 1; parallelism <= 12; parallelism++) {
+            final LineStatistics statistics = new ParallelLineReader(
+                    new LineReader(file.toPath()), parallelism, new ForkJoinPool(4)
+            ).statistics();
+
+            assertThat(statistics.lines()).isEqualTo(expected.lines()).isEqualTo(5);
+            assertThat(statistics.nonEmptyLines()).isEqualTo(expected.nonEmptyLines()).isEqualTo(3);
+            assertThat(statistics.maxLength()).isEqualTo(expected.maxLength()).isEqualTo(3);
+        }
+    }
+
+    @Test
+    public void splitsByteRangeOfLineReader() throws Exception {
+        final File file = files.newFile();
+        write(file.toPath(), new byte[]{'0', '1', '\r', '\n', '\n', '4', '5', '6', '\r', '\r', '\n', '7'});
+
+        for (int parallelism = 1; parallelism <= 12; parallelism++) {
+            final LineStatistics statistics = new ParallelLineReader(
+                    LineReader.builder(file.toPath()).range(3, 9).build(), parallelism, new ForkJoinPool(4)
+            ).statistics();
+
+            assertThat(statistics.lines()).isEqualTo(2);
+            assertThat(statistics.maxLength()).isEqualTo(3);
+        }
+    }
+
+    @Test
+    public void skipsLinesOnlyOnceFromLine() throws Exception {
+        final File file = files.newFile();
+        final StringBuilder content = new StringBuilder();
+
+        for (int i = 0; i < 1000; i++) {
+            content.append(i).append(i % 3 == 0 ? "\r\n" : "\n");
+        }
+        write(file.toPath(), content.toString().getBytes());
+
+        final LineIndex index = LineIndex.build(file.toPath(), 64);
+
+        for (LineIndex used : new LineIndex[]{null, index}) {
+            for (int parallelism = 1; parallelism <= 9; parallelism += 4) {
+                final LineReader reader = LineReader.builder(file.toPath()).fromLine(900, used).build();
+                final ParallelLineReader parallel = new ParallelLineReader(reader, parallelism, new ForkJoinPool(4));
+
+                final List<String> lines = new ArrayList<>();
+                final List<ReadAssertionSubscriber> ranges = new ArrayList<>();
+                parallel.subscribe(i -> {
+                    final ReadAssertionSubscriber subscriber = new ReadAssertionSubscriber();
+                    subscriber.request = MAX_VALUE;
+                    synchronized (ranges) {
+                        while (ranges.size() <= i) ranges.add(null);
+                        ranges.set(i, subscriber);
+                    }
+                    return subscriber;
+                });
+                for (ReadAssertionSubscriber subscriber : ranges) {
+                    subscriber.validate();
+                    lines.addAll(subscriber.items);
+                }
+
+                assertThat(lines).hasSize(100).startsWith("900").endsWith("999");
+                assertThat(parallel.statistics().lines()).isEqualTo(100);
+            }
+        }
+    }
+
+    List<String> readSequentially(File file) {
+        final ReadAssertionSubscriber subscriber = new ReadAssertionSubscriber();
+        subscriber.request = MAX_VALUE;
+        new LineReader(file.toPath()).subscribe(subscriber);
+        subscriber.validate();
+        return subscriber.items;
+    }
+
+    List<String> readInParallel(File file, int parallelism) {
+        final ParallelLineReader reader = new ParallelLineReader(
+                LineReader.builder(file.toPath()).build(), parallelism, new ForkJoinPool(4)
+        );
+        final List<ReadAssertionSubscriber> ranges = new ArrayList<>();
+
+        reader.subscribe(i -> {
+            final ReadAssertionSubscriber subscriber = new ReadAssertionSubscriber();
+            subscriber.request = MAX_VALUE;
+            synchronized (ranges) {
+                while (ranges.size() <= i) ranges.add(null);
+                ranges.set(i, subscriber);
+            }
+            return subscriber;
+        });
+
+        final List<String> lines = new ArrayList<>();
+        for (ReadAssertionSubscriber subscriber : ranges) {
+            subscriber.validate();
+            lines.addAll(subscriber.items);
+        }
+        subscribers = ranges;
+        return lines;
+    }
+}
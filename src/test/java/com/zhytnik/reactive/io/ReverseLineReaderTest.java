@@ -0,0 +1,134 @@
+/*
+ * Copyright 2018 Alexey Zhytnik
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zhytnik.reactive.io;
+
+import com.zhytnik.reactive.io.LineReaderTest.ReadAssertionSubscriber;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Flow.Publisher;
+
+import static java.lang.Long.MAX_VALUE;
+import static java.nio.file.Files.write;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Alexey Zhytnik
+ */
+public class ReverseLineReaderTest {
+
+    @ClassRule
+    public static TemporaryFolder files = new TemporaryFolder();
+
+    @Test
+    public void readsLinesOfLineReaderInReverseOrder() throws Exception {
+        final Random random = new Random(17);
+
+        for (int size : new int[]{1, 2, 3, 4095, 4096, 4097, 40_000, 100_000}) {
+            for (int terminators : new int[]{3, 12, 5000}) {
+                final Path file = files.newFile().toPath();
+                final byte[] content = new byte[size];
+
+                for (int i = 0; i < content.length; i++) {
+                    final int c = random.nextInt(terminators);
+                    content[i] = (byte) (c == 0 ? '\r' : c == 1 ? '\n' : 'a' + c % 20);
+                }
+                write(file, content);
+
+                final List<String> expected = read(new LineReader(file), MAX_VALUE);
+                Collections.reverse(expected);
+
+                assertThat(read(new ReverseLineReader(file), MAX_VALUE)).isEqualTo(expected);
+            }
+        }
+    }
+
+    @Test
+    public void readsLastLines() throws Exception {
+        final Path file = files.newFile().toPath();
+        write(file, "0\r\n1\r\r\n2\n\n3\r\n".getBytes());
+
+        assertThat(read(new ReverseLineReader(file), 1)).containsExactly("3");
+        assertThat(read(new ReverseLineReader(file), 3)).containsExactly("3", "", "2");
+        assertThat(read(new ReverseLineReader(file), 6)).containsExactly("3", "", "2", "", "1", "0");
+    }
+
+    @Test
+    public void readsLongLines() throws Exception {
+        final Path file = files.newFile().toPath();
+        final byte[] content = new byte[100_000];
+
+        Arrays.fill(content, (byte) 'x');
+        content[5] = '\n';
+        content[content.length - 1] = '\r';
+        write(file, content);
+
+        final List<String> lines = read(new ReverseLineReader(file), MAX_VALUE);
+
+        assertThat(lines).hasSize(2);
+        assertThat(lines.get(0)).hasSize(content.length - 7);
+        assertThat(lines.get(1)).isEqualTo("xxxxx");
+    }
+
+    @Test
+    public void readsEmptyFile() throws Exception {
+        assertThat(read(new ReverseLineReader(files.newFile().toPath()), MAX_VALUE)).isEmpty();
+    }
+
+    @Test
+    public void failsWhenStartIsReachedBeforeRequestedLines() throws Exception {
+        final Path file = files.newFile().toPath();
+        write(file, "0\n1".getBytes());
+
+        final ReadAssertionSubscriber subscriber = new ReadAssertionSubscriber();
+        subscriber.request = 3;
+        new ReverseLineReader(file).subscribe(subscriber.asExpected(LineReader.NoSuchLineCountException.class));
+
+        subscriber.validate();
+        assertThat(subscriber.isFailed()).isTrue();
+    }
+
+    @Test
+    public void failsOnWrongResources() throws Exception {
+        final File file = files.newFile();
+        file.delete();
+
+        final ReadAssertionSubscriber subscriber = new ReadAssertionSubscriber();
+        subscriber.request = 1;
+        new ReverseLineReader(file.toPath()).subscribe(subscriber.asExpected(NoSuchFileException.class));
+
+        subscriber.validate();
+        assertThat(subscriber.isFailed()).isTrue();
+    }
+
+    static List<String> read(Publisher<ByteBuffer> reader, long request) {
+        final ReadAssertionSubscriber subscriber = new ReadAssertionSubscriber();
+        subscriber.request = request;
+        reader.subscribe(subscriber);
+        subscriber.validate();
+        return new ArrayList<>(subscriber.items);
+    }
+}
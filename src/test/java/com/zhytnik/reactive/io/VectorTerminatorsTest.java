@@ -0,0 +1,132 @@
+/*
+ * Copyright 2018 Alexey Zhytnik
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zhytnik.reactive.io;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static com.zhytnik.reactive.io.LineTerminatorsTest.chunks;
+import static com.zhytnik.reactive.io.LineTerminatorsTest.fill;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Compares SIMD search of Java 17+ classes of the multi-release jar with SWAR search.
+ * Runs only when VectorTerminators is loaded (see multi-release-17 profile).
+ *
+ * @author Alexey Zhytnik
+ */
+public class VectorTerminatorsTest {
+
+    private static final int MAX_LANES = 64;
+    private static final MethodHandle VECTOR_SEARCH = vectorSearch();
+
+    @Before
+    public void setUp() {
+        assumeTrue(VECTOR_SEARCH != null);
+    }
+
+    @Test
+    public void lineTerminatorsUseVectors() throws Exception {
+        final Field vectorized = LineTerminators.class.getDeclaredField("VECTORIZED");
+        vectorized.setAccessible(true);
+
+        assertThat(vectorized.getBoolean(null)).isTrue();
+    }
+
+    @Test
+    public void findsSameTerminatorsAsSwarSearch() throws Throwable {
+        final Random random = new Random(17);
+
+        for (ByteBuffer chunk : chunks(1024)) {
+            for (int round = 0; round < 500; round++) {
+                final int density = 1 + random.nextInt(256);
+
+                for (int i = 0; i < chunk.capacity(); i++) {
+                    final int c = random.nextInt(2 * density);
+                    chunk.put(i, (byte) (c == 0 ? '\r' : c == 1 ? '\n' : random.nextInt(256)));
+                }
+                final int from = random.nextInt(chunk.capacity());
+                final int to = from + random.nextInt(chunk.capacity() - from + 1);
+
+                assertSameSearch(chunk, from, to);
+            }
+        }
+    }
+
+    @Test
+    public void searchesTailsShorterThanVector() throws Throwable {
+        for (ByteBuffer chunk : chunks(4 * MAX_LANES)) {
+            fill(chunk, (byte) 'a');
+
+            for (int from = 0; from < MAX_LANES; from++) {
+                for (int to = from; to <= from + 2 * MAX_LANES; to++) {
+                    assertSameSearch(chunk, from, to);
+
+                    if (to > from) {
+                        chunk.put(to - 1, (byte) '\n');
+                        assertSameSearch(chunk, from, to);
+                        chunk.put(to - 1, (byte) 'a');
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void findsLoneCarriageReturnsAtLaneBoundaries() throws Throwable {
+        for (ByteBuffer chunk : chunks(4 * MAX_LANES)) {
+            for (int boundary = 8; boundary < chunk.capacity(); boundary += 8) {
+                for (int i = boundary - 1; i <= boundary; i++) {
+                    fill(chunk, (byte) 'a');
+                    chunk.put(i, (byte) '\r');
+
+                    assertSameSearch(chunk, 0, chunk.capacity());
+                    assertSameSearch(chunk, i, chunk.capacity());
+                    assertSameSearch(chunk, i + 1, chunk.capacity());
+                    assertSameSearch(chunk, 0, i + 1);
+                }
+            }
+        }
+    }
+
+    private static void assertSameSearch(ByteBuffer chunk, int from, int to) throws Throwable {
+        final int expected = SwarTerminators.indexOf(chunk, from, to);
+
+        assertThat((int) VECTOR_SEARCH.invokeExact(chunk, from, to)).isEqualTo(expected);
+        assertThat(LineTerminators.indexOf(chunk, from, to)).isEqualTo(expected);
+    }
+
+    /**
+     * @return the search of VectorTerminators or {@code null} if it isn't available
+     */
+    private static MethodHandle vectorSearch() {
+        try {
+            final Class<?> terminators = Class.forName("com.zhytnik.reactive.io.VectorTerminators");
+            final MethodType type = MethodType.methodType(int.class, ByteBuffer.class, int.class, int.class);
+            return MethodHandles.lookup().findStatic(terminators, "indexOf", type);
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+}